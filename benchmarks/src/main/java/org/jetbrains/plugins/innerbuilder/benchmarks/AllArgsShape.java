@@ -0,0 +1,66 @@
+package org.jetbrains.plugins.innerbuilder.benchmarks;
+
+import java.util.List;
+
+/**
+ * Builder as generated with field values passed to the constructor, so the builder doesn't escape {@code build()}.
+ */
+public class AllArgsShape {
+    private final String name;
+    private int age;
+    private long id;
+    private List<String> tags;
+
+    private AllArgsShape(String name, int age, long id, List<String> tags) {
+        this.name = name;
+        this.age = age;
+        this.id = id;
+        this.tags = tags;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public static final class Builder {
+        private final String name;
+        private int age;
+        private long id;
+        private List<String> tags;
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Builder id(long val) {
+            id = val;
+            return this;
+        }
+
+        public Builder tags(List<String> val) {
+            tags = val;
+            return this;
+        }
+
+        public AllArgsShape build() {
+            return new AllArgsShape(name, age, id, tags);
+        }
+    }
+}
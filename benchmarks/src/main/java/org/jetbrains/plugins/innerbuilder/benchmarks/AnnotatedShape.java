@@ -0,0 +1,84 @@
+package org.jetbrains.plugins.innerbuilder.benchmarks;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * Builder as generated with 'with...' notation and JSR-305 annotations, for a class with setters that the
+ * generated constructor calls instead of assigning the fields.
+ */
+public class AnnotatedShape {
+    private final String name;
+    private int age;
+    private long id;
+    private List<String> tags;
+
+    private AnnotatedShape(Builder builder) {
+        name = builder.name;
+        setAge(builder.age);
+        setId(builder.id);
+        setTags(builder.tags);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        this.age = age;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public static final class Builder {
+        private final String name;
+        private int age;
+        private long id;
+        private List<String> tags;
+
+        public Builder(@Nonnull String name) {
+            this.name = name;
+        }
+
+        @Nonnull
+        public Builder withAge(int val) {
+            age = val;
+            return this;
+        }
+
+        @Nonnull
+        public Builder withId(long val) {
+            id = val;
+            return this;
+        }
+
+        @Nonnull
+        public Builder withTags(@Nonnull List<String> val) {
+            tags = val;
+            return this;
+        }
+
+        @Nonnull
+        public AnnotatedShape build() {
+            return new AnnotatedShape(this);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.jetbrains.plugins.innerbuilder.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@code build()} and of copying an instance through its builder, for each shape the generator emits.
+ * Run with {@code java -jar target/benchmarks.jar -prof gc} to also get the allocation rate per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class BuilderBenchmark {
+    private String name;
+    private int age;
+    private long id;
+    private List<String> tags;
+
+    private StaticFactoryShape staticFactoryShape;
+    private CopyConstructorShape copyConstructorShape;
+    private ReusableShape.Builder reusableBuilder;
+
+    @Setup
+    public void setUp() {
+        name = "name";
+        age = 42;
+        id = 4242L;
+        tags = Arrays.asList("a", "b", "c");
+
+        staticFactoryShape = buildStaticFactory();
+        copyConstructorShape = buildCopyConstructor();
+        reusableBuilder = new ReusableShape.Builder();
+    }
+
+    @Benchmark
+    public DefaultShape buildDefault() {
+        return new DefaultShape.Builder(name).age(age).id(id).tags(tags).build();
+    }
+
+    /**
+     * With scalar replacement of the builder, {@code gc.alloc.rate.norm} equals the size of one {@link AllArgsShape}.
+     */
+    @Benchmark
+    public AllArgsShape buildAllArgs() {
+        return new AllArgsShape.Builder(name).age(age).id(id).tags(tags).build();
+    }
+
+    @Benchmark
+    public StaticFactoryShape buildStaticFactory() {
+        return StaticFactoryShape.newBuilder(name).age(age).id(id).tags(tags).build();
+    }
+
+    /**
+     * The stage interfaces are implemented by the builder itself, so each stage is the same object.
+     */
+    @Benchmark
+    public StagedShape buildStaged() {
+        return StagedShape.newBuilder().name(name).id(id).age(age).tags(tags).build();
+    }
+
+    @Benchmark
+    public CopyConstructorShape buildCopyConstructor() {
+        return new CopyConstructorShape.Builder().name(name).age(age).id(id).tags(tags).build();
+    }
+
+    @Benchmark
+    public AnnotatedShape buildAnnotated() {
+        return new AnnotatedShape.Builder(name).withAge(age).withId(id).withTags(tags).build();
+    }
+
+    @Benchmark
+    public RequiredFieldsShape buildRequiredFields() {
+        return new RequiredFieldsShape.Builder().name(name).age(age).id(id).tags(tags).build();
+    }
+
+    @Benchmark
+    public CollectionAddersShape buildCollectionAdders() {
+        return new CollectionAddersShape.Builder().name(name).expectTags(3).addTag("a").addTag("b").addTag("c")
+                .build();
+    }
+
+    @Benchmark
+    public ReusableShape buildReusable() {
+        return reusableBuilder.name(name).age(age).id(id).tags(tags).buildAndReset();
+    }
+
+    @Benchmark
+    public ReusableShape buildForCurrentThread() {
+        return ReusableShape.Builder.forCurrentThread().name(name).age(age).id(id).tags(tags).build();
+    }
+
+    @Benchmark
+    public StaticFactoryShape copyStaticFactory() {
+        return StaticFactoryShape.newBuilder(staticFactoryShape).age(age).build();
+    }
+
+    @Benchmark
+    public CopyConstructorShape copyCopyConstructor() {
+        return new CopyConstructorShape.Builder(copyConstructorShape).age(age).build();
+    }
+
+    @Benchmark
+    public CopyConstructorShape toBuilderCopyConstructor() {
+        return copyConstructorShape.toBuilder().age(age).build();
+    }
+}
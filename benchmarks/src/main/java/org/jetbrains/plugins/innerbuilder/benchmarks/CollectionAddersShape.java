@@ -0,0 +1,82 @@
+package org.jetbrains.plugins.innerbuilder.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builder as generated with collection element adders.
+ */
+public class CollectionAddersShape {
+    private String name;
+    private List<String> tags;
+
+    private CollectionAddersShape(Builder builder) {
+        name = builder.name;
+        tags = builder.tags == null ? null
+                : Collections.unmodifiableList(builder.tagsOwned ? builder.tags : new ArrayList<>(builder.tags));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public static final class Builder {
+        private String name;
+        private List<String> tags;
+        private boolean tagsOwned;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder tags(List<String> val) {
+            tags = val;
+            tagsOwned = false;
+            return this;
+        }
+
+        private List<String> mutableTags(int extraSize) {
+            if (!this.tagsOwned) {
+                final List<String> copy = new ArrayList<>(
+                        Math.max((this.tags == null ? 0 : this.tags.size()) + extraSize, 10));
+                if (this.tags != null) {
+                    copy.addAll(this.tags);
+                }
+                this.tags = copy;
+                this.tagsOwned = true;
+            }
+            return this.tags;
+        }
+
+        public Builder expectTags(int expectedSize) {
+            mutableTags(expectedSize);
+            return this;
+        }
+
+        public Builder addTag(String val) {
+            mutableTags(1).add(val);
+            return this;
+        }
+
+        public Builder addAllTags(Collection<? extends String> values) {
+            mutableTags(values.size()).addAll(values);
+            return this;
+        }
+
+        public CollectionAddersShape build() {
+            final CollectionAddersShape result = new CollectionAddersShape(this);
+            tagsOwned = false;
+            return result;
+        }
+    }
+}
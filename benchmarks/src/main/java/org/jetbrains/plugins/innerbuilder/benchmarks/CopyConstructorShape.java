@@ -0,0 +1,87 @@
+package org.jetbrains.plugins.innerbuilder.benchmarks;
+
+import java.util.List;
+
+/**
+ * Builder as generated with the copy constructor, {@code toBuilder()} and setters for final fields, so every field is
+ * set through the builder.
+ */
+public class CopyConstructorShape {
+    private final String name;
+    private final int age;
+    private final long id;
+    private final List<String> tags;
+
+    private CopyConstructorShape(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+        id = builder.id;
+        tags = builder.tags;
+    }
+
+    public Builder toBuilder() {
+        final Builder builder = new Builder();
+        builder.name = this.name;
+        builder.age = this.age;
+        builder.id = this.id;
+        builder.tags = this.tags;
+        return builder;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public static final class Builder {
+        private String name;
+        private int age;
+        private long id;
+        private List<String> tags;
+
+        public Builder() {
+        }
+
+        public Builder(CopyConstructorShape copy) {
+            this.name = copy.getName();
+            this.age = copy.getAge();
+            this.id = copy.getId();
+            this.tags = copy.getTags();
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Builder id(long val) {
+            id = val;
+            return this;
+        }
+
+        public Builder tags(List<String> val) {
+            tags = val;
+            return this;
+        }
+
+        public CopyConstructorShape build() {
+            return new CopyConstructorShape(this);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.jetbrains.plugins.innerbuilder.benchmarks;
+
+import java.util.List;
+
+/**
+ * Builder as generated with the default options: a public builder constructor and plain setters.
+ */
+public class DefaultShape {
+    private final String name;
+    private int age;
+    private long id;
+    private List<String> tags;
+
+    private DefaultShape(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+        id = builder.id;
+        tags = builder.tags;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public static final class Builder {
+        private final String name;
+        private int age;
+        private long id;
+        private List<String> tags;
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Builder id(long val) {
+            id = val;
+            return this;
+        }
+
+        public Builder tags(List<String> val) {
+            tags = val;
+            return this;
+        }
+
+        public DefaultShape build() {
+            return new DefaultShape(this);
+        }
+    }
+}
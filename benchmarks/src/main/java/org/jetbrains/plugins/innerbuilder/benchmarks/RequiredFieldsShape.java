@@ -0,0 +1,88 @@
+package org.jetbrains.plugins.innerbuilder.benchmarks;
+
+import java.util.List;
+
+/**
+ * Builder as generated with required field checks, with {@code name} and {@code id} required.
+ */
+public class RequiredFieldsShape {
+    private String name;
+    private int age;
+    private long id;
+    private List<String> tags;
+
+    private RequiredFieldsShape(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+        id = builder.id;
+        tags = builder.tags;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public static final class Builder {
+        private String name;
+        private int age;
+        private long id;
+        private List<String> tags;
+        private static final long REQUIRED_FIELDS = 0x3L;
+        private long setFields;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            setFields |= 0x1L;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Builder id(long val) {
+            id = val;
+            setFields |= 0x2L;
+            return this;
+        }
+
+        public Builder tags(List<String> val) {
+            tags = val;
+            return this;
+        }
+
+        public RequiredFieldsShape build() {
+            if (setFields != REQUIRED_FIELDS) {
+                throw new IllegalStateException(missingRequiredFields());
+            }
+            return new RequiredFieldsShape(this);
+        }
+
+        private String missingRequiredFields() {
+            final StringBuilder missing = new StringBuilder("Missing required fields:");
+            if ((setFields & 0x1L) == 0L) {
+                missing.append(" name");
+            }
+            if ((setFields & 0x2L) == 0L) {
+                missing.append(" id");
+            }
+            return missing.toString();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.jetbrains.plugins.innerbuilder.benchmarks;
+
+import java.util.List;
+
+/**
+ * Builder as generated with the reusable builder and the per-thread builder accessor.
+ */
+public class ReusableShape {
+    private String name;
+    private int age;
+    private long id;
+    private List<String> tags;
+
+    private ReusableShape(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+        id = builder.id;
+        tags = builder.tags;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public static final class Builder {
+        private static final ThreadLocal<Builder> THREAD_LOCAL_BUILDER = ThreadLocal.withInitial(Builder::new);
+        private String name;
+        private int age;
+        private long id;
+        private List<String> tags;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Builder id(long val) {
+            id = val;
+            return this;
+        }
+
+        public Builder tags(List<String> val) {
+            tags = val;
+            return this;
+        }
+
+        public ReusableShape build() {
+            return new ReusableShape(this);
+        }
+
+        public ReusableShape buildAndReset() {
+            final ReusableShape result = new ReusableShape(this);
+            reset();
+            return result;
+        }
+
+        public Builder reset() {
+            this.name = null;
+            this.age = 0;
+            this.id = 0;
+            this.tags = null;
+            return this;
+        }
+
+        public static Builder forCurrentThread() {
+            return THREAD_LOCAL_BUILDER.get().reset();
+        }
+    }
+}
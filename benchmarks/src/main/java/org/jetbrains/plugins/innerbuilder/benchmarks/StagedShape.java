@@ -0,0 +1,85 @@
+package org.jetbrains.plugins.innerbuilder.benchmarks;
+
+import java.util.List;
+
+/**
+ * Builder as generated with the staged builder option: the final fields are set through stage interfaces, so
+ * {@code build()} is only reachable once they are all set and needs no checks.
+ */
+public class StagedShape {
+    private final String name;
+    private final long id;
+    private int age;
+    private List<String> tags;
+
+    private StagedShape(Builder builder) {
+        name = builder.name;
+        id = builder.id;
+        age = builder.age;
+        tags = builder.tags;
+    }
+
+    public static NameStage newBuilder() {
+        return new Builder();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public interface NameStage {
+        IdStage name(String val);
+    }
+
+    public interface IdStage {
+        Builder id(long val);
+    }
+
+    public static final class Builder implements NameStage, IdStage {
+        private String name;
+        private long id;
+        private int age;
+        private List<String> tags;
+
+        private Builder() {
+        }
+
+        @Override
+        public IdStage name(String val) {
+            this.name = val;
+            return this;
+        }
+
+        @Override
+        public Builder id(long val) {
+            this.id = val;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Builder tags(List<String> val) {
+            tags = val;
+            return this;
+        }
+
+        public StagedShape build() {
+            return new StagedShape(this);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.jetbrains.plugins.innerbuilder.benchmarks;
+
+import java.util.List;
+
+/**
+ * Builder as generated with the static builder method and the copy builder method in the parent class.
+ */
+public class StaticFactoryShape {
+    private final String name;
+    private int age;
+    private long id;
+    private List<String> tags;
+
+    private StaticFactoryShape(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+        id = builder.id;
+        tags = builder.tags;
+    }
+
+    public static Builder newBuilder(String name) {
+        return new Builder(name);
+    }
+
+    public static Builder newBuilder(StaticFactoryShape copy) {
+        Builder builder = new Builder(copy.name);
+        builder.age = copy.getAge();
+        builder.id = copy.getId();
+        builder.tags = copy.getTags();
+        return builder;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public static final class Builder {
+        private final String name;
+        private int age;
+        private long id;
+        private List<String> tags;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Builder id(long val) {
+            id = val;
+            return this;
+        }
+
+        public Builder tags(List<String> val) {
+            tags = val;
+            return this;
+        }
+
+        public StaticFactoryShape build() {
+            return new StaticFactoryShape(this);
+        }
+    }
+}
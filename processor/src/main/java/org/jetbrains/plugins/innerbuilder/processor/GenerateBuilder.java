@@ -0,0 +1,24 @@
+package org.jetbrains.plugins.innerbuilder.processor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a {@code <ClassName>Builder} next to the annotated class at compile time.
+ * <p>
+ * {@code build()} calls a non-private constructor of the annotated class that takes either the builder, reading its
+ * package-private fields, or the values of all builder fields in field order.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateBuilder {
+
+    /**
+     * @return the options to generate the builder with.
+     */
+    InnerBuilderOption[] value() default {};
+}
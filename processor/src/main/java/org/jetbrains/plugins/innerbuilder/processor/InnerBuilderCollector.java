@@ -0,0 +1,208 @@
+package org.jetbrains.plugins.innerbuilder.processor;
+
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.Trees;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selects the builder fields the way the plugin's field chooser preselects them: all eligible fields of the class and
+ * its superclasses, superclass fields first, without the fields excluded by the {@link InnerBuilderExclusionRules}.
+ */
+final class InnerBuilderCollector {
+    private final ProcessingEnvironment processingEnv;
+    private final InnerBuilderExclusionRules rules;
+    private final Trees trees;
+
+    InnerBuilderCollector(final ProcessingEnvironment processingEnv, final InnerBuilderExclusionRules rules) {
+        this.processingEnv = processingEnv;
+        this.rules = rules;
+        this.trees = findTrees(processingEnv);
+    }
+
+    /**
+     * @param clazz the class to generate the builder for.
+     * @return the builder fields, superclass fields first. For records, the fields of the record components in
+     * declaration order.
+     * @throws InnerBuilderProcessingException if the class is abstract.
+     */
+    List<VariableElement> collectFields(final TypeElement clazz) throws InnerBuilderProcessingException {
+        if (clazz.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new InnerBuilderProcessingException(clazz, "Cannot generate a builder for an abstract class");
+        }
+
+        final List<VariableElement> allFields = new ArrayList<>();
+        if (isRecord(clazz)) {
+            for (final VariableElement field : ElementFilter.fieldsIn(clazz.getEnclosedElements())) {
+                if (!field.getModifiers().contains(Modifier.STATIC)) {
+                    allFields.add(field);
+                }
+            }
+            return allFields;
+        }
+
+        final Set<String> methodNames = collectMethodNames(clazz);
+        TypeElement classToExtractFieldsFrom = clazz;
+        while (classToExtractFieldsFrom != null) {
+            final List<VariableElement> classFields = new ArrayList<>();
+            for (final VariableElement field : ElementFilter.fieldsIn(classToExtractFieldsFrom.getEnclosedElements())) {
+                if (isBuilderField(field, clazz, classToExtractFieldsFrom, methodNames)) {
+                    classFields.add(field);
+                }
+            }
+            allFields.addAll(0, classFields);
+
+            classToExtractFieldsFrom = getSuperClass(classToExtractFieldsFrom);
+        }
+
+        return allFields;
+    }
+
+    static boolean isRecord(final TypeElement clazz) {
+        // ElementKind.RECORD only exists from Java 16 on
+        return "RECORD".equals(clazz.getKind().name());
+    }
+
+    static String capitalize(final String str) {
+        return hasOneLetterPrefix(str) ?
+                Character.toUpperCase(str.charAt(1)) + str.substring(2) :
+                Character.toUpperCase(str.charAt(0)) + str.substring(1);
+    }
+
+    static boolean hasOneLetterPrefix(final String str) {
+        if (str.length() == 1) return false;
+        return Character.isLowerCase(str.charAt(0)) && Character.isUpperCase(str.charAt(1));
+    }
+
+    private boolean isBuilderField(final VariableElement field, final TypeElement accessObjectClass,
+            final TypeElement clazz, final Set<String> methodNames) {
+        final String fieldName = field.getSimpleName().toString();
+
+        // check access to the field from the builder container class (e.g. private superclass fields)
+        if (!isAccessible(field, accessObjectClass, clazz)
+                && !methodNames.contains(String.format("set%s", capitalize(fieldName)))) {
+            return false;
+        }
+
+        // skip static fields
+        if (field.getModifiers().contains(Modifier.STATIC)) {
+            return false;
+        }
+
+        // skip any uppercase fields
+        if (!hasLowerCaseChar(fieldName)) {
+            return false;
+        }
+
+        // skip the fields excluded by the processor options, by default logging fields
+        if (rules.isExcluded(field, processingEnv.getTypeUtils())) {
+            return false;
+        }
+
+        if (field.getModifiers().contains(Modifier.FINAL)) {
+            if (hasInitializer(field)) {
+                return false; // skip final fields that are assigned in the declaration
+            }
+
+            if (!accessObjectClass.equals(clazz)) {
+                return false; // skip final superclass fields
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isAccessible(final VariableElement field, final TypeElement accessObjectClass,
+                                 final TypeElement clazz) {
+        if (accessObjectClass.equals(clazz)) {
+            return true;
+        }
+
+        final Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+
+        final Elements elements = processingEnv.getElementUtils();
+        return modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.PROTECTED)
+                || elements.getPackageOf(clazz).equals(elements.getPackageOf(accessObjectClass));
+    }
+
+    /**
+     * The initializer of a final field is only visible in the compiler's syntax trees. Without them, only constant
+     * initializers are recognized.
+     */
+    private boolean hasInitializer(final VariableElement field) {
+        if (field.getConstantValue() != null) {
+            return true;
+        }
+
+        if (trees != null) {
+            final Tree tree = trees.getTree(field);
+            if (tree instanceof VariableTree) {
+                return ((VariableTree) tree).getInitializer() != null;
+            }
+        }
+
+        return false;
+    }
+
+    private Set<String> collectMethodNames(final TypeElement clazz) {
+        final Set<String> methodNames = new HashSet<>();
+        for (TypeElement type = clazz; type != null; type = getSuperClass(type)) {
+            for (final ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                methodNames.add(method.getSimpleName().toString());
+            }
+        }
+
+        return methodNames;
+    }
+
+    private TypeElement getSuperClass(final TypeElement clazz) {
+        final TypeMirror superclass = clazz.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+
+        final Element element = processingEnv.getTypeUtils().asElement(superclass);
+        if (element == null || element.getKind() != ElementKind.CLASS
+                || ((TypeElement) element).getQualifiedName().contentEquals(Object.class.getName())) {
+            return null;
+        }
+
+        return (TypeElement) element;
+    }
+
+    private static boolean hasLowerCaseChar(final String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (Character.isLowerCase(str.charAt(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static Trees findTrees(final ProcessingEnvironment processingEnv) {
+        try {
+            return Trees.instance(processingEnv);
+        } catch (final IllegalArgumentException | LinkageError e) {
+            return null; // not javac, e.g. the Eclipse compiler
+        }
+    }
+}
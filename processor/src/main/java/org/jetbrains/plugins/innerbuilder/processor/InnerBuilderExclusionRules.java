@@ -0,0 +1,136 @@
+package org.jetbrains.plugins.innerbuilder.processor;
+
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The rules excluding fields from the builder, the same rules the plugin reads from {@code .idea/innerbuilder.xml},
+ * passed as processor options instead. Types, annotations and modifiers are separated by commas, name patterns by
+ * whitespace, since a regular expression may contain commas.
+ */
+final class InnerBuilderExclusionRules {
+    static final String EXCLUDED_TYPES_OPTION = "innerbuilder.excludedTypes";
+    static final String EXCLUDED_ANNOTATIONS_OPTION = "innerbuilder.excludedAnnotations";
+    static final String EXCLUDED_MODIFIERS_OPTION = "innerbuilder.excludedModifiers";
+    static final String EXCLUDED_NAME_PATTERNS_OPTION = "innerbuilder.excludedNamePatterns";
+    static final Set<String> OPTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            EXCLUDED_TYPES_OPTION, EXCLUDED_ANNOTATIONS_OPTION, EXCLUDED_MODIFIERS_OPTION,
+            EXCLUDED_NAME_PATTERNS_OPTION)));
+
+    private static final List<String> DEFAULT_EXCLUDED_TYPES = Collections.unmodifiableList(Arrays.asList(
+            "org.apache.log4j.Logger", "org.apache.logging.log4j.Logger", "java.util.logging.Logger",
+            "org.slf4j.Logger", "ch.qos.logback.classic.Logger", "net.sf.microlog.core.Logger",
+            "org.apache.commons.logging.Log", "org.pmw.tinylog.Logger", "org.jboss.logging.Logger",
+            "jodd.log.Logger"));
+
+    private final Set<String> types;
+    private final Set<String> annotations;
+    private final Set<Modifier> modifiers;
+    private final List<Pattern> namePatterns;
+
+    private InnerBuilderExclusionRules(final Set<String> types, final Set<String> annotations,
+                                       final Set<Modifier> modifiers, final List<Pattern> namePatterns) {
+        this.types = types;
+        this.annotations = annotations;
+        this.modifiers = modifiers;
+        this.namePatterns = namePatterns;
+    }
+
+    /**
+     * Without options, only the common logger types are excluded, like in the plugin. Invalid modifiers and name
+     * patterns are reported as warnings and skipped, so a typo doesn't disable the other rules.
+     */
+    static InnerBuilderExclusionRules compile(final Map<String, String> options, final Messager messager) {
+        final String typesOption = options.get(EXCLUDED_TYPES_OPTION);
+        final Set<String> types = new HashSet<>(typesOption != null ? split(typesOption, ",")
+                : DEFAULT_EXCLUDED_TYPES);
+
+        final Set<Modifier> modifiers = EnumSet.noneOf(Modifier.class);
+        for (final String modifier : split(options.get(EXCLUDED_MODIFIERS_OPTION), ",")) {
+            try {
+                modifiers.add(Modifier.valueOf(modifier.toUpperCase(Locale.ROOT)));
+            } catch (final IllegalArgumentException e) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "Ignoring unknown excluded modifier: " + modifier);
+            }
+        }
+
+        // compiled one by one, so the groups and backreferences of each pattern keep their numbers
+        final List<Pattern> namePatterns = new ArrayList<>();
+        for (final String pattern : split(options.get(EXCLUDED_NAME_PATTERNS_OPTION), "\\s+")) {
+            try {
+                namePatterns.add(Pattern.compile(pattern));
+            } catch (final PatternSyntaxException e) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "Ignoring invalid excluded field name pattern: "
+                        + pattern + ", " + e.getDescription());
+            }
+        }
+
+        return new InnerBuilderExclusionRules(types, new HashSet<>(split(options.get(EXCLUDED_ANNOTATIONS_OPTION),
+                ",")), modifiers, namePatterns);
+    }
+
+    /**
+     * Type arguments are dropped, a rule for {@code com.example.Cache} also excludes {@code Cache<K, V>} fields.
+     *
+     * @return true if the field matches any rule.
+     */
+    boolean isExcluded(final VariableElement field, final Types typeUtils) {
+        final String name = field.getSimpleName().toString();
+        for (final Pattern namePattern : namePatterns) {
+            if (namePattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+
+        if (!Collections.disjoint(modifiers, field.getModifiers())) {
+            return true;
+        }
+
+        if (!types.isEmpty() && types.contains(typeUtils.erasure(field.asType()).toString())) {
+            return true;
+        }
+
+        if (!annotations.isEmpty()) {
+            for (final AnnotationMirror annotation : field.getAnnotationMirrors()) {
+                final Element annotationType = annotation.getAnnotationType().asElement();
+                if (annotationType instanceof TypeElement && annotations.contains(
+                        ((TypeElement) annotationType).getQualifiedName().toString())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static List<String> split(final String option, final String separator) {
+        final List<String> values = new ArrayList<>();
+        if (option == null) {
+            return values;
+        }
+
+        for (final String value : option.split(separator)) {
+            if (!value.trim().isEmpty()) {
+                values.add(value.trim());
+            }
+        }
+        return values;
+    }
+}
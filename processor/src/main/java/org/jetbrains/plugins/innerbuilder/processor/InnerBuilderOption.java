@@ -0,0 +1,26 @@
+package org.jetbrains.plugins.innerbuilder.processor;
+
+/**
+ * The options of the plugin that apply to a builder generated as a separate class. The {@code STATIC_BUILDER_*} options
+ * name the static builder method of {@link #NEW_BUILDER_METHOD}, {@code newBuilder()} by default.
+ */
+public enum InnerBuilderOption {
+
+    FINAL_SETTERS,
+    NEW_BUILDER_METHOD,
+    STATIC_BUILDER_NEW_BUILDER_NAME,
+    STATIC_BUILDER_BUILDER_NAME,
+    STATIC_BUILDER_NEW_CLASS_NAME,
+    STATIC_BUILDER_NEW_CLASS_NAME_BUILDER,
+    COPY_CONSTRUCTOR,
+    INDEXED_SETTERS,
+    REUSABLE_BUILDER,
+    THREAD_LOCAL_BUILDER,
+    REQUIRED_FIELDS,
+    WITH_NOTATION,
+    SET_NOTATION,
+    JSR305_ANNOTATIONS,
+    PMD_AVOID_FIELD_NAME_MATCHING_METHOD_NAME_ANNOTATION,
+    WITH_JAVADOC,
+    FIELD_NAMES
+}
@@ -0,0 +1,21 @@
+package org.jetbrains.plugins.innerbuilder.processor;
+
+import javax.lang.model.element.Element;
+
+/**
+ * A builder that can't be generated, reported as a compile error on {@link #getElement()}.
+ */
+final class InnerBuilderProcessingException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final transient Element element;
+
+    InnerBuilderProcessingException(final Element element, final String message) {
+        super(message);
+        this.element = element;
+    }
+
+    Element getElement() {
+        return element;
+    }
+}
@@ -0,0 +1,80 @@
+package org.jetbrains.plugins.innerbuilder.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Generates the builders of the classes annotated with {@link GenerateBuilder}.
+ * <p>
+ * Each builder only depends on its annotated class, which is passed as the originating element, so the processor is
+ * registered as isolating for Gradle's incremental compilation. The fields excluded from the builders are configured
+ * with the processor options of {@link InnerBuilderExclusionRules}.
+ */
+@SupportedAnnotationTypes("org.jetbrains.plugins.innerbuilder.processor.GenerateBuilder")
+public final class InnerBuilderProcessor extends AbstractProcessor {
+    private InnerBuilderExclusionRules rules;
+
+    @Override
+    public synchronized void init(final ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        rules = InnerBuilderExclusionRules.compile(processingEnv.getOptions(), processingEnv.getMessager());
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return InnerBuilderExclusionRules.OPTIONS;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final InnerBuilderCollector collector = new InnerBuilderCollector(processingEnv, rules);
+        for (final Element element : roundEnv.getElementsAnnotatedWith(GenerateBuilder.class)) {
+            try {
+                if (!element.getKind().isClass() || element.getKind().name().equals("ENUM")) {
+                    throw new InnerBuilderProcessingException(element, "Only classes and records can have a builder");
+                }
+                generate(collector, (TypeElement) element);
+            } catch (final InnerBuilderProcessingException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.getElement());
+            } catch (final IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Cannot write builder: " + e.getMessage(), element);
+            }
+        }
+
+        return true;
+    }
+
+    private void generate(final InnerBuilderCollector collector, final TypeElement targetClass)
+            throws InnerBuilderProcessingException, IOException {
+        final Set<InnerBuilderOption> options = EnumSet.noneOf(InnerBuilderOption.class);
+        options.addAll(Arrays.asList(targetClass.getAnnotation(GenerateBuilder.class).value()));
+
+        final InnerBuilderWriter builderWriter = new InnerBuilderWriter(processingEnv, targetClass,
+                collector.collectFields(targetClass), options);
+        final String text = builderWriter.render();
+
+        final JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                builderWriter.getQualifiedBuilderName(), targetClass);
+        try (Writer writer = file.openWriter()) {
+            writer.write(text);
+        }
+    }
+}
@@ -0,0 +1,612 @@
+package org.jetbrains.plugins.innerbuilder.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Renders the source of the builder class for one annotated class, in the shape the plugin generates inner builders,
+ * except that the builder is a top-level class in the same package.
+ */
+final class InnerBuilderWriter {
+    private static final String BUILDER_SUFFIX = "Builder";
+    private static final String BUILDER_SETTER_DEFAULT_PARAMETER_NAME = "val";
+    private static final String BUILDER_SETTER_ALTERNATIVE_PARAMETER_NAME = "value";
+    private static final String JSR305_NONNULL = "javax.annotation.Nonnull";
+    private static final String NEW_BUILDER_METHOD_NAME = "newBuilder";
+    private static final String BUILDER_METHOD_NAME = "builder";
+    private static final String RESET_METHOD_NAME = "reset";
+    private static final String SET_FIELDS_NAME = "setFields";
+    private static final String REQUIRED_FIELDS_NAME = "REQUIRED_FIELDS";
+    private static final String MISSING_FIELDS_METHOD_NAME = "missingRequiredFields";
+    private static final String THREAD_LOCAL_FIELD_NAME = "THREAD_LOCAL_BUILDER";
+    private static final String ORDINAL_CONSTANT_PREFIX = "FIELD_";
+    private static final Set<String> NOT_NULL_ANNOTATION_NAMES = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList("NotNull", "Nonnull", "NonNull")));
+
+    private final ProcessingEnvironment processingEnv;
+    private final TypeElement targetClass;
+    private final List<VariableElement> fields;
+    private final Set<InnerBuilderOption> options;
+    private final String builderName;
+    private final String targetName;
+    private final List<VariableElement> requiredFields = new ArrayList<>();
+
+    InnerBuilderWriter(final ProcessingEnvironment processingEnv, final TypeElement targetClass,
+                       final List<VariableElement> fields, final Set<InnerBuilderOption> options) {
+        this.processingEnv = processingEnv;
+        this.targetClass = targetClass;
+        this.fields = fields;
+        this.options = options;
+        this.builderName = getBuilderName(targetClass);
+        this.targetName = targetClass.getQualifiedName().toString();
+    }
+
+    /**
+     * @param targetClass the annotated class.
+     * @return the simple name of its builder, {@code Outer_InnerBuilder} for nested classes.
+     */
+    static String getBuilderName(final TypeElement targetClass) {
+        final StringBuilder name = new StringBuilder(targetClass.getSimpleName());
+        for (Element enclosing = targetClass.getEnclosingElement(); enclosing instanceof TypeElement;
+             enclosing = enclosing.getEnclosingElement()) {
+            name.insert(0, '_').insert(0, enclosing.getSimpleName());
+        }
+        return name.append(BUILDER_SUFFIX).toString();
+    }
+
+    String getQualifiedBuilderName() {
+        final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(targetClass);
+        return packageElement.isUnnamed() ? builderName : packageElement.getQualifiedName() + "." + builderName;
+    }
+
+    String render() throws InnerBuilderProcessingException {
+        if (!targetClass.getTypeParameters().isEmpty()) {
+            throw new InnerBuilderProcessingException(targetClass, "Cannot generate a builder for a generic class");
+        }
+        if (targetClass.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new InnerBuilderProcessingException(targetClass, "Cannot generate a builder for a private class");
+        }
+
+        final boolean record = InnerBuilderCollector.isRecord(targetClass);
+        final List<VariableElement> finalFields = new ArrayList<>();
+        final List<VariableElement> nonFinalFields = new ArrayList<>();
+        for (final VariableElement field : fields) {
+            if (field.getModifiers().contains(Modifier.FINAL) && !options.contains(InnerBuilderOption.FINAL_SETTERS)
+                    && !record) {
+                finalFields.add(field);
+            } else {
+                nonFinalFields.add(field);
+            }
+        }
+        final String newTargetText = getNewTargetText();
+        if (options.contains(InnerBuilderOption.REQUIRED_FIELDS)) {
+            collectRequiredFields(nonFinalFields);
+        }
+        final boolean threadLocalBuilder = options.contains(InnerBuilderOption.REUSABLE_BUILDER)
+                && options.contains(InnerBuilderOption.THREAD_LOCAL_BUILDER) && finalFields.isEmpty();
+
+        final StringBuilder text = new StringBuilder();
+        final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(targetClass);
+        if (!packageElement.isUnnamed()) {
+            text.append("package ").append(packageElement.getQualifiedName()).append(";\n\n");
+        }
+
+        if (options.contains(InnerBuilderOption.WITH_JAVADOC)) {
+            text.append("/**\n * {@code ").append(targetClass.getSimpleName()).append("} builder.\n */\n");
+        }
+        if (options.contains(InnerBuilderOption.PMD_AVOID_FIELD_NAME_MATCHING_METHOD_NAME_ANNOTATION)) {
+            text.append("@SuppressWarnings(\"PMD.AvoidFieldNameMatchingMethodName\")\n");
+        }
+        text.append(targetClass.getModifiers().contains(Modifier.PUBLIC) ? "public " : "");
+        text.append("final class ").append(builderName).append(" {\n");
+
+        // package-private, so a constructor taking the builder can read them
+        for (final VariableElement field : fields) {
+            text.append("    ").append(finalFields.contains(field) ? "final " : "");
+            text.append(getType(field)).append(' ').append(field.getSimpleName()).append(";\n");
+        }
+        if (!requiredFields.isEmpty()) {
+            text.append(String.format("    private static final long %s = %s;\n", REQUIRED_FIELDS_NAME,
+                    toHexText(requiredFields.size() == Long.SIZE ? -1L : (1L << requiredFields.size()) - 1)));
+            text.append(String.format("    private long %s;\n", SET_FIELDS_NAME));
+        }
+        if (options.contains(InnerBuilderOption.INDEXED_SETTERS)) {
+            final List<String> constantNames = getOrdinalConstantNames(nonFinalFields);
+            for (int ordinal = 0; ordinal < constantNames.size(); ordinal++) {
+                text.append(String.format("    public static final int %s = %d;\n", constantNames.get(ordinal),
+                        ordinal));
+            }
+        }
+        if (threadLocalBuilder) {
+            text.append(String.format("    private static final ThreadLocal<%1$s> %2$s = "
+                    + "ThreadLocal.withInitial(%1$s::new);\n", builderName, THREAD_LOCAL_FIELD_NAME));
+        }
+
+        appendBuilderConstructor(text, finalFields);
+        if (options.contains(InnerBuilderOption.COPY_CONSTRUCTOR)) {
+            appendCopy(text, finalFields, nonFinalFields, record);
+        }
+        if (options.contains(InnerBuilderOption.NEW_BUILDER_METHOD)) {
+            appendNewBuilderMethod(text, finalFields);
+        }
+        for (final VariableElement field : nonFinalFields) {
+            appendSetter(text, field);
+        }
+        if (options.contains(InnerBuilderOption.INDEXED_SETTERS)) {
+            appendIndexedSetters(text, nonFinalFields);
+        }
+
+        text.append('\n').append(methodComment(String.format("Returns a {@code %s} built from the parameters "
+                + "previously set.", targetClass.getSimpleName()), String.format("a {@code %s} built with "
+                + "parameters of this {@code %s}", targetClass.getSimpleName(), builderName)));
+        appendNonnull(text);
+        text.append("    public ").append(targetName).append(" build() {\n");
+        if (!requiredFields.isEmpty()) {
+            text.append(String.format("        if (%s != %s) {\n            throw new IllegalStateException(%s());\n"
+                    + "        }\n", SET_FIELDS_NAME, REQUIRED_FIELDS_NAME, MISSING_FIELDS_METHOD_NAME));
+        }
+        text.append("        return ").append(newTargetText).append(";\n    }\n");
+
+        if (options.contains(InnerBuilderOption.REUSABLE_BUILDER)) {
+            appendReuse(text, nonFinalFields);
+        }
+        if (threadLocalBuilder) {
+            appendForCurrentThread(text);
+        }
+        if (!requiredFields.isEmpty()) {
+            appendMissingFieldsMethod(text);
+        }
+
+        return text.append("}\n").toString();
+    }
+
+    /**
+     * @return {@code new Target(this)} or {@code new Target(a, b)}, whichever non-private constructor exists.
+     */
+    private String getNewTargetText() throws InnerBuilderProcessingException {
+        final Types types = processingEnv.getTypeUtils();
+        for (final ExecutableElement constructor : ElementFilter.constructorsIn(targetClass.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                continue;
+            }
+
+            final List<? extends VariableElement> parameters = constructor.getParameters();
+            if (parameters.size() == 1 && isBuilderType(parameters.get(0).asType())) {
+                return String.format("new %s(this)", targetName);
+            }
+
+            if (parameters.size() == fields.size()) {
+                boolean matches = true;
+                for (int i = 0; i < parameters.size() && matches; i++) {
+                    matches = types.isSameType(types.erasure(parameters.get(i).asType()),
+                            types.erasure(getFieldType(fields.get(i))));
+                }
+                if (matches) {
+                    final StringBuilder text = new StringBuilder("new ").append(targetName).append('(');
+                    for (int i = 0; i < fields.size(); i++) {
+                        text.append(i > 0 ? ", " : "").append(fields.get(i).getSimpleName());
+                    }
+                    return text.append(')').toString();
+                }
+            }
+        }
+
+        throw new InnerBuilderProcessingException(targetClass, String.format("Cannot generate a builder, %s needs "
+                + "a non-private constructor taking a %s or the values of all builder fields",
+                targetClass.getSimpleName(), builderName));
+    }
+
+    /**
+     * The builder doesn't exist yet in the first round, its type is an error type named as written in the source.
+     */
+    private boolean isBuilderType(final TypeMirror type) {
+        final String typeName = type.toString();
+        return (type.getKind() == TypeKind.ERROR || type.getKind() == TypeKind.DECLARED)
+                && (typeName.equals(builderName) || typeName.equals(getQualifiedBuilderName()));
+    }
+
+    private void appendBuilderConstructor(final StringBuilder text, final List<VariableElement> finalFields) {
+        text.append('\n');
+        text.append(options.contains(InnerBuilderOption.NEW_BUILDER_METHOD) ? "    private " : "    public ");
+        text.append(builderName).append('(');
+        appendParameters(text, finalFields);
+        text.append(") {\n");
+        for (final VariableElement field : finalFields) {
+            text.append(String.format("        this.%1$s = %1$s;\n", field.getSimpleName()));
+        }
+        text.append("    }\n");
+    }
+
+    private void appendNewBuilderMethod(final StringBuilder text, final List<VariableElement> finalFields) {
+        text.append('\n');
+        text.append("    public static ").append(builderName).append(' ').append(getNewBuilderMethodName());
+        text.append('(');
+        appendParameters(text, finalFields);
+        text.append(") {\n        return new ").append(builderName).append('(');
+        for (int i = 0; i < finalFields.size(); i++) {
+            text.append(i > 0 ? ", " : "").append(finalFields.get(i).getSimpleName());
+        }
+        text.append(");\n    }\n");
+    }
+
+    /**
+     * Adds a copy constructor, or with the static builder method a static copy method.
+     */
+    private void appendCopy(final StringBuilder text, final List<VariableElement> finalFields,
+                            final List<VariableElement> nonFinalFields, final boolean record)
+            throws InnerBuilderProcessingException {
+        text.append('\n');
+        if (options.contains(InnerBuilderOption.NEW_BUILDER_METHOD)) {
+            text.append("    public static ").append(builderName).append(' ').append(getNewBuilderMethodName());
+            text.append('(').append(targetName).append(" copy) {\n");
+            text.append("        ").append(builderName).append(" builder = new ").append(builderName).append('(');
+            for (int i = 0; i < finalFields.size(); i++) {
+                text.append(i > 0 ? ", " : "").append(getCopyReadText(finalFields.get(i), record));
+            }
+            text.append(");\n");
+            for (final VariableElement field : nonFinalFields) {
+                text.append(String.format("        builder.%s = %s;\n", field.getSimpleName(),
+                        getCopyReadText(field, record)));
+            }
+            if (!requiredFields.isEmpty()) {
+                text.append(String.format("        builder.%s = %s;\n", SET_FIELDS_NAME, REQUIRED_FIELDS_NAME));
+            }
+            text.append("        return builder;\n    }\n");
+        } else {
+            text.append("    public ").append(builderName).append('(').append(targetName).append(" copy) {\n");
+            for (final VariableElement field : fields) {
+                text.append(String.format("        this.%s = %s;\n", field.getSimpleName(),
+                        getCopyReadText(field, record)));
+            }
+            if (!requiredFields.isEmpty()) {
+                text.append(String.format("        this.%s = %s;\n", SET_FIELDS_NAME, REQUIRED_FIELDS_NAME));
+            }
+            text.append("    }\n");
+        }
+    }
+
+    /**
+     * @return {@code copy.x()} for records, {@code copy.x} if the builder can access the field, else
+     * {@code copy.getX()}.
+     */
+    private String getCopyReadText(final VariableElement field, final boolean record)
+            throws InnerBuilderProcessingException {
+        final String fieldName = field.getSimpleName().toString();
+        if (record) {
+            return String.format("copy.%s()", fieldName);
+        }
+
+        final Elements elements = processingEnv.getElementUtils();
+        final Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC) || !modifiers.contains(Modifier.PRIVATE)
+                && elements.getPackageOf(field).equals(elements.getPackageOf(targetClass))) {
+            return String.format("copy.%s", fieldName);
+        }
+
+        final String capitalized = InnerBuilderCollector.capitalize(fieldName);
+        for (final ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(targetClass))) {
+            final String methodName = method.getSimpleName().toString();
+            if (method.getParameters().isEmpty() && !method.getModifiers().contains(Modifier.PRIVATE)
+                    && (methodName.equals("get" + capitalized) || methodName.equals("is" + capitalized))) {
+                return String.format("copy.%s()", methodName);
+            }
+        }
+
+        throw new InnerBuilderProcessingException(field, String.format("Cannot copy %s into %s, it needs a "
+                + "non-private field or getter", fieldName, builderName));
+    }
+
+    private void appendSetter(final StringBuilder text, final VariableElement field) {
+        final String rawFieldName = field.getSimpleName().toString();
+        final String strippedFieldName = getStrippedFieldName(rawFieldName);
+        final String methodName = getSetterName(strippedFieldName);
+
+        final String parameterName = options.contains(InnerBuilderOption.FIELD_NAMES) ?
+                strippedFieldName :
+                !BUILDER_SETTER_DEFAULT_PARAMETER_NAME.equals(strippedFieldName) ?
+                        BUILDER_SETTER_DEFAULT_PARAMETER_NAME :
+                        BUILDER_SETTER_ALTERNATIVE_PARAMETER_NAME;
+
+        text.append('\n');
+        if (options.contains(InnerBuilderOption.WITH_JAVADOC)) {
+            text.append(String.format("    /**\n     * Sets the {@code %1$s} and returns a reference to this "
+                    + "builder enabling method chaining.\n     *\n     * @param %2$s the {@code %1$s} to set\n"
+                    + "     * @return a reference to this builder\n     */\n", strippedFieldName, parameterName));
+        }
+        appendNonnull(text);
+        text.append("    public ").append(builderName).append(' ').append(methodName).append('(');
+        appendParameter(text, field, parameterName);
+        text.append(") {\n");
+        text.append(String.format("        this.%s = %s;\n", rawFieldName, parameterName));
+        final int bit = requiredFields.indexOf(field);
+        if (bit >= 0) {
+            text.append(String.format("        %s |= %s;\n", SET_FIELDS_NAME, toHexText(1L << bit)));
+        }
+        text.append("        return this;\n    }\n");
+    }
+
+    /**
+     * Strips a one-letter prefix, e.g. {@code mAppId} becomes {@code appId}, for method naming only.
+     */
+    private static String getStrippedFieldName(final String rawFieldName) {
+        return InnerBuilderCollector.hasOneLetterPrefix(rawFieldName) ?
+                Character.toLowerCase(rawFieldName.charAt(1)) + rawFieldName.substring(2) : rawFieldName;
+    }
+
+    private String getSetterName(final String strippedFieldName) {
+        if (options.contains(InnerBuilderOption.WITH_NOTATION)) {
+            return String.format("with%s", InnerBuilderCollector.capitalize(strippedFieldName));
+        } else if (options.contains(InnerBuilderOption.SET_NOTATION)) {
+            return String.format("set%s", InnerBuilderCollector.capitalize(strippedFieldName));
+        }
+        return strippedFieldName;
+    }
+
+    private String getNewBuilderMethodName() {
+        if (options.contains(InnerBuilderOption.STATIC_BUILDER_BUILDER_NAME)) {
+            return BUILDER_METHOD_NAME;
+        }
+        if (options.contains(InnerBuilderOption.STATIC_BUILDER_NEW_CLASS_NAME)) {
+            return "new" + targetClass.getSimpleName();
+        }
+        if (options.contains(InnerBuilderOption.STATIC_BUILDER_NEW_CLASS_NAME_BUILDER)) {
+            return "new" + targetClass.getSimpleName() + BUILDER_SUFFIX;
+        }
+        return NEW_BUILDER_METHOD_NAME;
+    }
+
+    /**
+     * Fields with a not-null annotation are required, the processor has no dialog to choose them, matched by simple
+     * name, so any of the common annotation libraries works.
+     */
+    private void collectRequiredFields(final List<VariableElement> nonFinalFields)
+            throws InnerBuilderProcessingException {
+        for (final VariableElement field : nonFinalFields) {
+            for (final AnnotationMirror annotation : field.getAnnotationMirrors()) {
+                if (NOT_NULL_ANNOTATION_NAMES.contains(
+                        annotation.getAnnotationType().asElement().getSimpleName().toString())) {
+                    requiredFields.add(field);
+                    break;
+                }
+            }
+        }
+
+        if (requiredFields.size() > Long.SIZE) {
+            throw new InnerBuilderProcessingException(targetClass, String.format("Cannot generate a builder with "
+                    + "more than %d required fields", Long.SIZE));
+        }
+    }
+
+    private void appendMissingFieldsMethod(final StringBuilder text) {
+        text.append("\n    private String ").append(MISSING_FIELDS_METHOD_NAME).append("() {\n");
+        text.append("        final StringBuilder missing = new StringBuilder(\"Missing required fields:\");\n");
+        for (int bit = 0; bit < requiredFields.size(); bit++) {
+            text.append(String.format("        if ((%s & %s) == 0L) {\n            missing.append(\" %s\");\n"
+                    + "        }\n", SET_FIELDS_NAME, toHexText(1L << bit), requiredFields.get(bit).getSimpleName()));
+        }
+        text.append("        return missing.toString();\n    }\n");
+    }
+
+    /**
+     * The ordinal constants are named after the stripped field names, or after the raw field names when two stripped
+     * names are the same, like {@code mName} and {@code name}.
+     */
+    private static List<String> getOrdinalConstantNames(final List<VariableElement> nonFinalFields) {
+        final List<String> names = getOrdinalNames(nonFinalFields);
+        final List<String> constantNames = new ArrayList<>(names.size());
+        for (final String name : names) {
+            final StringBuilder constantName = new StringBuilder(ORDINAL_CONSTANT_PREFIX);
+            for (int i = 0; i < name.length(); i++) {
+                final char c = name.charAt(i);
+                if (Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(name.charAt(i - 1))) {
+                    constantName.append('_');
+                }
+                constantName.append(Character.toUpperCase(c));
+            }
+            constantNames.add(constantName.toString());
+        }
+        return constantNames;
+    }
+
+    private static List<String> getOrdinalNames(final List<VariableElement> nonFinalFields) {
+        final List<String> names = new ArrayList<>(nonFinalFields.size());
+        for (final VariableElement field : nonFinalFields) {
+            names.add(getStrippedFieldName(field.getSimpleName().toString()));
+        }
+        if (new HashSet<>(names).size() == names.size()) {
+            return names;
+        }
+
+        names.clear();
+        for (final VariableElement field : nonFinalFields) {
+            names.add(field.getSimpleName().toString());
+        }
+        return names;
+    }
+
+    /**
+     * Adds {@code ordinalOf(String)}, {@code set(int, Object)} and {@code setInt()} and {@code setLong()} for the
+     * primitive fields, all dispatching to the regular setters.
+     */
+    private void appendIndexedSetters(final StringBuilder text, final List<VariableElement> nonFinalFields) {
+        final List<String> names = getOrdinalNames(nonFinalFields);
+        final List<String> constantNames = getOrdinalConstantNames(nonFinalFields);
+
+        text.append('\n').append(methodComment("Returns the ordinal of the field with the given name.",
+                String.format("one of the {@code %s} constants, or -1 if there's no such field",
+                        ORDINAL_CONSTANT_PREFIX)));
+        text.append("    public static int ordinalOf(String name) {\n        switch (name) {\n");
+        for (int ordinal = 0; ordinal < names.size(); ordinal++) {
+            text.append(String.format("            case \"%s\":\n                return %s;\n", names.get(ordinal),
+                    constantNames.get(ordinal)));
+        }
+        text.append("            default:\n                return -1;\n        }\n    }\n");
+
+        final Types types = processingEnv.getTypeUtils();
+        final StringBuilder cases = new StringBuilder();
+        final StringBuilder intCases = new StringBuilder();
+        final StringBuilder longCases = new StringBuilder();
+        boolean unchecked = false;
+        for (int ordinal = 0; ordinal < nonFinalFields.size(); ordinal++) {
+            final VariableElement field = nonFinalFields.get(ordinal);
+            final TypeMirror type = getFieldType(field);
+            final String setterName = getSetterName(getStrippedFieldName(field.getSimpleName().toString()));
+            final String castType = type.getKind().isPrimitive() ? types.boxedClass((PrimitiveType) type)
+                    .getQualifiedName().toString() : type.toString();
+            cases.append(String.format("            case %s:\n                return %s((%s) value);\n",
+                    constantNames.get(ordinal), setterName, castType));
+            unchecked |= !type.getKind().isPrimitive() && !types.isSameType(types.erasure(type), type);
+
+            final StringBuilder primitiveCases = type.getKind() == TypeKind.INT ? intCases
+                    : type.getKind() == TypeKind.LONG ? longCases : null;
+            if (primitiveCases != null) {
+                primitiveCases.append(String.format("            case %s:\n                return %s(value);\n",
+                        constantNames.get(ordinal), setterName));
+            }
+        }
+
+        text.append('\n').append(methodComment(String.format("Sets the field with the given ordinal, one of the "
+                + "{@code %s} constants.", ORDINAL_CONSTANT_PREFIX), "a reference to this builder"));
+        if (unchecked) {
+            text.append("    @SuppressWarnings(\"unchecked\")\n");
+        }
+        appendNonnull(text);
+        text.append(String.format("    public %s set(int ordinal, Object value) {\n        switch (ordinal) {\n%s"
+                + "            default:\n                throw new IllegalArgumentException(\"Unknown field ordinal: "
+                + "\" + ordinal);\n        }\n    }\n", builderName, cases));
+
+        // the primitive setters only take fields of exactly their type, so values are never boxed
+        appendPrimitiveSetter(text, "setInt", "int", intCases);
+        appendPrimitiveSetter(text, "setLong", "long", longCases);
+    }
+
+    private void appendPrimitiveSetter(final StringBuilder text, final String methodName, final String typeName,
+                                       final StringBuilder cases) {
+        if (cases.length() == 0) {
+            return;
+        }
+
+        text.append('\n').append(methodComment(String.format("Sets the {@code %s} field with the given ordinal, "
+                + "one of the {@code %s} constants.", typeName, ORDINAL_CONSTANT_PREFIX),
+                "a reference to this builder"));
+        appendNonnull(text);
+        text.append(String.format("    public %s %s(int ordinal, %s value) {\n        switch (ordinal) {\n%s"
+                + "            default:\n                throw new IllegalArgumentException(\"Not a %s field: \" "
+                + "+ ordinal);\n        }\n    }\n", builderName, methodName, typeName, cases, typeName));
+    }
+
+    private void appendReuse(final StringBuilder text, final List<VariableElement> nonFinalFields) {
+        text.append('\n').append(methodComment(String.format("Builds a {@code %s} and resets this builder, so it "
+                + "can build the next one.", targetClass.getSimpleName()), String.format("a {@code %s} built with "
+                + "parameters of this {@code %s}", targetClass.getSimpleName(), builderName)));
+        appendNonnull(text);
+        text.append("    public ").append(targetName).append(" buildAndReset() {\n");
+        text.append("        final ").append(targetName).append(" result = build();\n");
+        text.append("        ").append(RESET_METHOD_NAME).append("();\n        return result;\n    }\n");
+
+        text.append('\n').append(methodComment("Sets the fields without constructor parameter back to their "
+                + "defaults.", "a reference to this builder"));
+        appendNonnull(text);
+        text.append("    public ").append(builderName).append(' ').append(RESET_METHOD_NAME).append("() {\n");
+        for (final VariableElement field : nonFinalFields) {
+            text.append(String.format("        this.%s = %s;\n", field.getSimpleName(),
+                    getDefaultValue(field.asType())));
+        }
+        if (!requiredFields.isEmpty()) {
+            text.append(String.format("        this.%s = 0L;\n", SET_FIELDS_NAME));
+        }
+        text.append("        return this;\n    }\n");
+    }
+
+    private void appendForCurrentThread(final StringBuilder text) {
+        text.append('\n').append(methodComment("Returns the reset builder of the current thread. The builder is shared "
+                + "by all callers on the thread, so it must not be used while another object is being built with it.",
+                "the builder of the current thread"));
+        appendNonnull(text);
+        text.append(String.format("    public static %s forCurrentThread() {\n        return %s.get().%s();\n    }\n",
+                builderName, THREAD_LOCAL_FIELD_NAME, RESET_METHOD_NAME));
+    }
+
+    private static String toHexText(final long value) {
+        return "0x" + Long.toHexString(value) + "L";
+    }
+
+    private void appendParameters(final StringBuilder text, final List<VariableElement> parameterFields) {
+        for (int i = 0; i < parameterFields.size(); i++) {
+            text.append(i > 0 ? ", " : "");
+            appendParameter(text, parameterFields.get(i), parameterFields.get(i).getSimpleName().toString());
+        }
+    }
+
+    private void appendParameter(final StringBuilder text, final VariableElement field, final String parameterName) {
+        if (options.contains(InnerBuilderOption.JSR305_ANNOTATIONS) && !field.asType().getKind().isPrimitive()) {
+            text.append('@').append(JSR305_NONNULL).append(' ');
+        }
+        text.append(getType(field)).append(' ').append(parameterName);
+    }
+
+    private void appendNonnull(final StringBuilder text) {
+        if (options.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+            text.append("    @").append(JSR305_NONNULL).append('\n');
+        }
+    }
+
+    private String methodComment(final String description, final String returnDescription) {
+        if (options.contains(InnerBuilderOption.WITH_JAVADOC)) {
+            return String.format("    /**\n     * %s\n     *\n     * @return %s\n     */\n", description,
+                    returnDescription);
+        }
+        return "";
+    }
+
+    /**
+     * @return the type of the field as seen from the target class, with superclass type arguments substituted.
+     */
+    private TypeMirror getFieldType(final VariableElement field) {
+        return processingEnv.getTypeUtils().asMemberOf((DeclaredType) targetClass.asType(), field);
+    }
+
+    private String getType(final VariableElement field) {
+        return getFieldType(field).toString();
+    }
+
+    private static String getDefaultValue(final TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case CHAR:
+                return "'\\0'";
+            case LONG:
+                return "0L";
+            case FLOAT:
+                return "0F";
+            case DOUBLE:
+                return "0D";
+            case BYTE:
+            case SHORT:
+            case INT:
+                return "0";
+            default:
+                return "null";
+        }
+    }
+}
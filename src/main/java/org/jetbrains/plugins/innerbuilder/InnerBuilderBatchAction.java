@@ -0,0 +1,189 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.FileModificationService;
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.LangDataKeys;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiPackage;
+import com.intellij.psi.search.GlobalSearchScope;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates builders for all classes selected in the project view, including the classes in selected files,
+ * directories and packages, with the current options and all eligible fields, without a dialog per class.
+ * <p>
+ * All classes are planned in one background read action, then applied in a single command, so one undo reverts the
+ * whole batch.
+ */
+public class InnerBuilderBatchAction extends AnAction {
+    @NonNls
+    private static final String COMMAND_NAME = "Generate Builders";
+
+    @Override
+    public void update(@NotNull final AnActionEvent e) {
+        final PsiElement[] elements = e.getData(LangDataKeys.PSI_ELEMENT_ARRAY);
+        e.getPresentation().setEnabledAndVisible(e.getProject() != null && elements != null
+            && hasTargets(elements));
+    }
+
+    @NotNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    public void actionPerformed(@NotNull final AnActionEvent e) {
+        final Project project = e.getProject();
+        final PsiElement[] elements = e.getData(LangDataKeys.PSI_ELEMENT_ARRAY);
+        if (project == null || elements == null) {
+            return;
+        }
+
+        // one commit for all documents, the plans are made against the committed PSI
+        PsiDocumentManager.getInstance(project).commitAllDocuments();
+
+        final InnerBuilderProfile profile = InnerBuilderProfile.resolve(project);
+        final List<PlannedClass> plannedClasses = InnerBuilderUtils.computeWithProgress(project,
+            "Planning Builders", () -> plan(project, elements, profile));
+        if (plannedClasses == null || plannedClasses.isEmpty()) {
+            return;
+        }
+
+        final Set<PsiFile> files = new LinkedHashSet<>();
+        for (final PlannedClass plannedClass : plannedClasses) {
+            files.add(plannedClass.plan.getTargetClass().getContainingFile());
+        }
+        if (!FileModificationService.getInstance().preparePsiElementsForWrite(files)) {
+            return;
+        }
+
+        WriteCommandAction.writeCommandAction(project, files.toArray(PsiFile.EMPTY_ARRAY))
+            .withName(COMMAND_NAME)
+            .run(() -> apply(plannedClasses));
+
+        final List<String> conflicts = new ArrayList<>();
+        for (final PlannedClass plannedClass : plannedClasses) {
+            conflicts.addAll(plannedClass.plan.getConflicts());
+        }
+        if (!conflicts.isEmpty()) {
+            Messages.showWarningDialog(project, StringUtil.join(conflicts, "\n"), COMMAND_NAME);
+        }
+    }
+
+    private static List<PlannedClass> plan(final Project project, final PsiElement[] elements,
+                                           final InnerBuilderProfile profile) {
+        final List<PlannedClass> plannedClasses = new ArrayList<>();
+        for (final PsiClass targetClass : collectTargetClasses(project, elements)) {
+            ProgressManager.checkCanceled();
+            final InnerBuilderMetrics.Invocation invocation = InnerBuilderMetrics.start();
+            final InnerBuilderHierarchyIndex index = new InnerBuilderHierarchyIndex(targetClass);
+            final List<PsiFieldMember> fields = invocation.time(InnerBuilderMetrics.Phase.COLLECT_FIELDS,
+                () -> InnerBuilderCollector.collectFields(targetClass, null, index));
+            if (fields == null || fields.isEmpty()) {
+                continue;
+            }
+
+            final InnerBuilderGenerator generator = new InnerBuilderGenerator(project, targetClass, fields,
+                InnerBuilderCollector.collectNotNullFields(fields), index, profile, invocation);
+            plannedClasses.add(new PlannedClass(generator, generator.plan()));
+        }
+        return plannedClasses;
+    }
+
+    /**
+     * Writes all plans first and post-processes afterwards, so the documents are only synchronized with the PSI once
+     * all builders are in place.
+     */
+    private static void apply(final List<PlannedClass> plannedClasses) {
+        final List<List<PsiElement>> generatedElements = new ArrayList<>(plannedClasses.size());
+        for (final PlannedClass plannedClass : plannedClasses) {
+            generatedElements.add(plannedClass.generator.apply(plannedClass.plan));
+        }
+        for (int i = 0; i < plannedClasses.size(); i++) {
+            plannedClasses.get(i).generator.postProcess(generatedElements.get(i));
+        }
+    }
+
+    private static Set<PsiClass> collectTargetClasses(final Project project, final PsiElement[] elements) {
+        final Set<PsiClass> targetClasses = new LinkedHashSet<>();
+        for (final PsiElement element : elements) {
+            if (element instanceof PsiClass) {
+                addTargetClass(targetClasses, (PsiClass) element);
+            } else if (element instanceof PsiJavaFile) {
+                addTargetClasses(targetClasses, (PsiJavaFile) element);
+            } else if (element instanceof PsiDirectory) {
+                addTargetClasses(targetClasses, (PsiDirectory) element);
+            } else if (element instanceof PsiPackage) {
+                for (final PsiDirectory directory : ((PsiPackage) element).getDirectories(
+                    GlobalSearchScope.projectScope(project))) {
+                    addTargetClasses(targetClasses, directory);
+                }
+            }
+        }
+        return targetClasses;
+    }
+
+    private static void addTargetClasses(final Set<PsiClass> targetClasses, final PsiDirectory directory) {
+        ProgressManager.checkCanceled();
+        for (final PsiFile file : directory.getFiles()) {
+            if (file instanceof PsiJavaFile) {
+                addTargetClasses(targetClasses, (PsiJavaFile) file);
+            }
+        }
+        for (final PsiDirectory subdirectory : directory.getSubdirectories()) {
+            addTargetClasses(targetClasses, subdirectory);
+        }
+    }
+
+    private static void addTargetClasses(final Set<PsiClass> targetClasses, final PsiJavaFile file) {
+        for (final PsiClass psiClass : file.getClasses()) {
+            addTargetClass(targetClasses, psiClass);
+        }
+    }
+
+    private static void addTargetClass(final Set<PsiClass> targetClasses, final PsiClass psiClass) {
+        if (InnerBuilderRegenerator.isTargetClass(psiClass) && !psiClass.isEnum() && !psiClass.isAnnotationType()) {
+            targetClasses.add(psiClass);
+        }
+    }
+
+    private static boolean hasTargets(final PsiElement[] elements) {
+        for (final PsiElement element : elements) {
+            if (element instanceof PsiClass || element instanceof PsiJavaFile || element instanceof PsiDirectory
+                || element instanceof PsiPackage) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class PlannedClass {
+        private final InnerBuilderGenerator generator;
+        private final InnerBuilderPlan plan;
+
+        private PlannedClass(final InnerBuilderGenerator generator, final InnerBuilderPlan plan) {
+            this.generator = generator;
+            this.plan = plan;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.PsiWildcardType;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The collection types builder fields get element adders for. The builder fills its own mutable collection and hands
+ * it to the built object as an unmodifiable view. A collection the builder doesn't own is copied once first.
+ */
+enum InnerBuilderCollectionKind {
+    LIST("java.util.List", "java.util.ArrayList", "unmodifiableList", false),
+    SET("java.util.Set", "java.util.LinkedHashSet", "unmodifiableSet", true),
+    MAP("java.util.Map", "java.util.LinkedHashMap", "unmodifiableMap", true);
+
+    @NonNls
+    private final String interfaceName;
+    @NonNls
+    private final String implementationName;
+    @NonNls
+    private final String unmodifiableMethodName;
+    private final boolean hashed;
+
+    InnerBuilderCollectionKind(final String interfaceName, final String implementationName,
+                               final String unmodifiableMethodName, final boolean hashed) {
+        this.interfaceName = interfaceName;
+        this.implementationName = implementationName;
+        this.unmodifiableMethodName = unmodifiableMethodName;
+        this.hashed = hashed;
+    }
+
+    /**
+     * @param type the declared type of the field.
+     * @return the kind of collection, or {@code null} if the type isn't one or elements can't be added to it.
+     */
+    @Nullable
+    static InnerBuilderCollectionKind of(final PsiType type) {
+        if (!(type instanceof PsiClassType)) {
+            return null;
+        }
+
+        final PsiClass psiClass = ((PsiClassType) type).resolve();
+        if (psiClass == null) {
+            return null;
+        }
+
+        for (final PsiType parameter : ((PsiClassType) type).getParameters()) {
+            if (parameter instanceof PsiWildcardType) {
+                return null;
+            }
+        }
+
+        for (final InnerBuilderCollectionKind kind : values()) {
+            if (kind.interfaceName.equals(psiClass.getQualifiedName())) {
+                return kind;
+            }
+        }
+
+        return null;
+    }
+
+    boolean isMap() {
+        return this == MAP;
+    }
+
+    /**
+     * @return the parameter types of the collection as source text, {@code Object} for raw types.
+     */
+    String[] getElementTypeTexts(final PsiType type) {
+        final PsiType[] parameters = ((PsiClassType) type).getParameters();
+        final String[] texts = new String[isMap() ? 2 : 1];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = i < parameters.length ? parameters[i].getCanonicalText() : "java.lang.Object";
+        }
+        return texts;
+    }
+
+    /**
+     * @param sizeText an expression for the number of elements the collection will hold.
+     * @return an expression creating an empty mutable collection with room for that many elements.
+     */
+    String getNewCollectionText(final String sizeText) {
+        if (hashed) {
+            return String.format("new %s<>(Math.max((int) (%s / .75f) + 1, 16))", implementationName, sizeText);
+        }
+        return String.format("new %s<>(Math.max(%s, 10))", implementationName, sizeText);
+    }
+
+    /**
+     * @return an expression creating a mutable copy of the collection.
+     */
+    String getCopyText(final String collectionText) {
+        return String.format("new %s<>(%s)", implementationName, collectionText);
+    }
+
+    String getUnmodifiableText(final String collectionText) {
+        return String.format("java.util.Collections.%s(%s)", unmodifiableMethodName, collectionText);
+    }
+}
@@ -1,20 +1,28 @@
 package org.jetbrains.plugins.innerbuilder;
 
+import com.intellij.codeInsight.NullableNotNullManager;
 import com.intellij.codeInsight.generation.PsiFieldMember;
 import com.intellij.openapi.editor.Editor;
-import com.intellij.psi.JavaPsiFacade;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiField;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiModifier;
-import com.intellij.psi.PsiResolveHelper;
+import com.intellij.psi.PsiRecordComponent;
 import com.intellij.psi.PsiSubstitutor;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.JavaPsiRecordUtil;
+import com.intellij.psi.util.PsiModificationTracker;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.TypeConversionUtil;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.jetbrains.plugins.innerbuilder.InnerBuilderUtils.hasLowerCaseChar;
@@ -24,23 +32,49 @@ public final class InnerBuilderCollector {
 
     @Nullable
     public static List<PsiFieldMember> collectFields(final PsiFile file, final Editor editor) {
-        final int offset = editor.getCaretModel().getOffset();
-        final PsiElement element = file.findElementAt(offset);
+        final PsiElement element = findElementAtCaret(file, editor);
         if (element == null) {
             return null;
         }
 
         final PsiClass clazz = PsiTreeUtil.getParentOfType(element, PsiClass.class);
-        if (clazz == null || clazz.hasModifierProperty(PsiModifier.ABSTRACT)) {
+        if (clazz == null) {
+            return null;
+        }
+
+        return collectFields(clazz, element, new InnerBuilderHierarchyIndex(clazz));
+    }
+
+    /**
+     * @param clazz   the class to generate the builder for.
+     * @param element the element at the caret, fields containing it are skipped.
+     * @param index   the hierarchy index of {@code clazz}, shared with the generator.
+     * @return the fields to choose from, superclass fields first, or {@code null} if the class is abstract. For
+     * records, the fields of the record components in declaration order.
+     */
+    @Nullable
+    public static List<PsiFieldMember> collectFields(final PsiClass clazz, @Nullable final PsiElement element,
+            final InnerBuilderHierarchyIndex index) {
+        if (clazz.hasModifierProperty(PsiModifier.ABSTRACT)) {
             return null;
         }
 
         final List<PsiFieldMember> allFields = new ArrayList<>();
+        if (clazz.isRecord()) {
+            for (final PsiField field : getRecordFields(clazz)) {
+                if (element == null || !PsiTreeUtil.isAncestor(field, element, false)) {
+                    allFields.add(new PsiFieldMember(field));
+                }
+            }
+            return allFields;
+        }
 
+        final InnerBuilderExclusionRules rules = InnerBuilderExclusionRules.getInstance(clazz.getProject());
         PsiClass classToExtractFieldsFrom = clazz;
         while (classToExtractFieldsFrom != null) {
+            ProgressManager.checkCanceled();
             final List<PsiFieldMember> classFieldMembers = collectFieldsInClass(element, clazz,
-                    classToExtractFieldsFrom);
+                    classToExtractFieldsFrom, index, rules);
             allFields.addAll(0, classFieldMembers);
 
             classToExtractFieldsFrom = classToExtractFieldsFrom.getSuperClass();
@@ -49,49 +83,117 @@ public final class InnerBuilderCollector {
         return allFields;
     }
 
-    private static List<PsiFieldMember> collectFieldsInClass(final PsiElement element, final PsiClass accessObjectClass,
-            final PsiClass clazz) {
-        final List<PsiFieldMember> classFieldMembers = new ArrayList<>();
-        final PsiResolveHelper helper = JavaPsiFacade.getInstance(clazz.getProject()).getResolveHelper();
+    /**
+     * @param fields the fields of the builder.
+     * @return the fields annotated as not-null, these are required by default.
+     */
+    public static List<PsiField> collectNotNullFields(final List<PsiFieldMember> fields) {
+        final List<PsiField> notNullFields = new ArrayList<>();
+        for (final PsiFieldMember member : fields) {
+            if (NullableNotNullManager.isNotNull(member.getElement())) {
+                notNullFields.add(member.getElement());
+            }
+        }
 
-        for (final PsiField field : clazz.getFields()) {
+        return notNullFields;
+    }
 
-            // check access to the field from the builder container class (e.g. private superclass fields)
-            if ((helper.isAccessible(field, clazz, accessObjectClass) || hasSetter(clazz, field.getName()))
-                    && !PsiTreeUtil.isAncestor(field, element, false)) {
+    /**
+     * Cheap alternative to {@link #collectFields(PsiFile, Editor)} for action updates. The eligible fields of the
+     * class at the caret are cached per class until the next PSI change, so repeated updates don't walk the hierarchy.
+     *
+     * @return true if {@link #collectFields(PsiFile, Editor)} would return a non-empty list.
+     */
+    public static boolean hasFields(final PsiFile file, final Editor editor) {
+        final PsiElement element = findElementAtCaret(file, editor);
+        if (element == null) {
+            return false;
+        }
 
-                // skip static fields
-                if (field.hasModifierProperty(PsiModifier.STATIC)) {
-                    continue;
-                }
+        final PsiClass clazz = PsiTreeUtil.getParentOfType(element, PsiClass.class);
+        if (clazz == null || clazz.hasModifierProperty(PsiModifier.ABSTRACT)) {
+            return false;
+        }
 
-                // skip any uppercase fields
-                if (!hasLowerCaseChar(field.getName())) {
-                    continue;
-                }
+        for (final PsiField field : getCandidateFields(clazz)) {
+            if (!PsiTreeUtil.isAncestor(field, element, false)) {
+                return true;
+            }
+        }
 
-                // skip eventual logging fields
-                final String fieldType = field.getType().getCanonicalText();
-                if ("org.apache.log4j.Logger".equals(fieldType) || "org.apache.logging.log4j.Logger".equals(fieldType)
-                        || "java.util.logging.Logger".equals(fieldType) || "org.slf4j.Logger".equals(fieldType)
-                        || "ch.qos.logback.classic.Logger".equals(fieldType)
-                        || "net.sf.microlog.core.Logger".equals(fieldType)
-                        || "org.apache.commons.logging.Log".equals(fieldType)
-                        || "org.pmw.tinylog.Logger".equals(fieldType) || "org.jboss.logging.Logger".equals(fieldType)
-                        || "jodd.log.Logger".equals(fieldType)) {
-                    continue;
-                }
+        return false;
+    }
 
-                if (field.hasModifierProperty(PsiModifier.FINAL)) {
-                    if (field.getInitializer() != null) {
-                        continue; // skip final fields that are assigned in the declaration
-                    }
+    @Nullable
+    private static PsiElement findElementAtCaret(final PsiFile file, final Editor editor) {
+        final int offset = editor.getCaretModel().getOffset();
+        return file.findElementAt(offset);
+    }
 
-                    if (!accessObjectClass.isEquivalentTo(clazz)) {
-                        continue; // skip final superclass fields
-                    }
+    /**
+     * @param clazz the class.
+     * @return the fields of the class and its superclasses a builder can be generated for, cached until the next PSI
+     * change or change of the exclusion rules.
+     */
+    static List<PsiField> getCandidateFields(final PsiClass clazz) {
+        return CachedValuesManager.getCachedValue(clazz, () -> {
+            final Project project = clazz.getProject();
+            final ModificationTracker settings = project.isDefault()
+                    ? ModificationTracker.NEVER_CHANGED : InnerBuilderProjectSettings.getInstance(project);
+            final InnerBuilderExclusionRules rules = InnerBuilderExclusionRules.getInstance(project);
+            final List<PsiField> fields = computeCandidateFields(clazz, rules);
+            return CachedValueProvider.Result.create(fields, PsiModificationTracker.MODIFICATION_COUNT, settings);
+        });
+    }
+
+    /**
+     * @param record the record.
+     * @return the implicit fields of the record components, in the order of the canonical constructor parameters.
+     */
+    static List<PsiField> getRecordFields(final PsiClass record) {
+        final List<PsiField> fields = new ArrayList<>();
+        for (final PsiRecordComponent component : record.getRecordComponents()) {
+            final PsiField field = JavaPsiRecordUtil.getFieldForComponent(component);
+            if (field != null) {
+                fields.add(field);
+            }
+        }
+
+        return fields;
+    }
+
+    private static List<PsiField> computeCandidateFields(final PsiClass clazz,
+            final InnerBuilderExclusionRules rules) {
+        if (clazz.isRecord()) {
+            return Collections.unmodifiableList(getRecordFields(clazz));
+        }
+
+        final List<PsiField> candidateFields = new ArrayList<>();
+        final InnerBuilderHierarchyIndex index = new InnerBuilderHierarchyIndex(clazz);
+
+        PsiClass classToExtractFieldsFrom = clazz;
+        while (classToExtractFieldsFrom != null) {
+            for (final PsiField field : classToExtractFieldsFrom.getFields()) {
+                if (isBuilderField(index, rules, field, clazz, classToExtractFieldsFrom)) {
+                    candidateFields.add(field);
                 }
+            }
+
+            classToExtractFieldsFrom = classToExtractFieldsFrom.getSuperClass();
+        }
+
+        return Collections.unmodifiableList(candidateFields);
+    }
 
+    private static List<PsiFieldMember> collectFieldsInClass(@Nullable final PsiElement element,
+            final PsiClass accessObjectClass, final PsiClass clazz, final InnerBuilderHierarchyIndex index,
+            final InnerBuilderExclusionRules rules) {
+        final List<PsiFieldMember> classFieldMembers = new ArrayList<>();
+
+        for (final PsiField field : clazz.getFields()) {
+            ProgressManager.checkCanceled();
+            if ((element == null || !PsiTreeUtil.isAncestor(field, element, false))
+                    && isBuilderField(index, rules, field, accessObjectClass, clazz)) {
                 final PsiClass containingClass = field.getContainingClass();
                 if (containingClass != null) {
                     classFieldMembers.add(buildFieldMember(field, containingClass, clazz));
@@ -102,14 +204,42 @@ public final class InnerBuilderCollector {
         return classFieldMembers;
     }
 
-    private static boolean hasSetter(PsiClass clazz, String name) {
-        for (int i = 0; i < clazz.getAllMethods().length; i++) {
-            if (clazz.getAllMethods()[i].getName().equals(String.format("set%s", InnerBuilderUtils.capitalize(name)))) {
-                return true;
+    private static boolean isBuilderField(final InnerBuilderHierarchyIndex index,
+            final InnerBuilderExclusionRules rules, final PsiField field, final PsiClass accessObjectClass,
+            final PsiClass clazz) {
+        // skip static fields
+        if (field.hasModifierProperty(PsiModifier.STATIC)) {
+            return false;
+        }
+
+        // skip any uppercase fields
+        if (!hasLowerCaseChar(field.getName())) {
+            return false;
+        }
+
+        // skip excluded fields, e.g. loggers
+        if (rules.isExcluded(field)) {
+            return false;
+        }
+
+        // check access to the field from the builder container class (e.g. private superclass fields)
+        if (!index.isAccessible(field) && !index.hasSetter(field.getName())) {
+            return false;
+        }
+
+        if (field.hasModifierProperty(PsiModifier.FINAL)) {
+            // skip final fields that are assigned in the declaration, also with FIELD_DEFAULTS: the constructor taking
+            // the builder can't assign them again, and the fields are offered before the options are chosen
+            if (field.getInitializer() != null) {
+                return false;
+            }
+
+            if (!accessObjectClass.isEquivalentTo(clazz)) {
+                return false; // skip final superclass fields
             }
         }
 
-        return false;
+        return field.getContainingClass() != null;
     }
 
     private static PsiFieldMember buildFieldMember(final PsiField field, final PsiClass containingClass,
@@ -0,0 +1,133 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiAnnotation;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiType;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The rules excluding fields from the builder, compiled from the {@link InnerBuilderProjectSettings} once: the type
+ * and annotation names into hash sets, each name pattern into its own regex, so its groups and backreferences keep
+ * their numbers.
+ */
+final class InnerBuilderExclusionRules {
+    private static final Logger LOG = Logger.getInstance(InnerBuilderExclusionRules.class);
+
+    @NonNls
+    static final List<String> DEFAULT_EXCLUDED_TYPES = Collections.unmodifiableList(Arrays.asList(
+            "org.apache.log4j.Logger", "org.apache.logging.log4j.Logger", "java.util.logging.Logger",
+            "org.slf4j.Logger", "ch.qos.logback.classic.Logger", "net.sf.microlog.core.Logger",
+            "org.apache.commons.logging.Log", "org.pmw.tinylog.Logger", "org.jboss.logging.Logger",
+            "jodd.log.Logger"));
+
+    private static final InnerBuilderExclusionRules DEFAULT = compile(new InnerBuilderProjectSettings.Options());
+
+    private final Set<String> types;
+    private final Set<String> annotations;
+    private final String[] modifiers;
+    private final Pattern[] namePatterns;
+
+    private InnerBuilderExclusionRules(final Set<String> types, final Set<String> annotations,
+                                       final String[] modifiers, final Pattern[] namePatterns) {
+        this.types = types;
+        this.annotations = annotations;
+        this.modifiers = modifiers;
+        this.namePatterns = namePatterns;
+    }
+
+    static InnerBuilderExclusionRules getInstance(@NotNull final Project project) {
+        return project.isDefault() ? DEFAULT : InnerBuilderProjectSettings.getInstance(project).getExclusionRules();
+    }
+
+    /**
+     * Invalid modifiers and name patterns are logged and skipped, so a typo doesn't disable the other rules.
+     */
+    static InnerBuilderExclusionRules compile(@NotNull final InnerBuilderProjectSettings.Options options) {
+        final List<String> modifiers = new ArrayList<>();
+        for (final String modifier : options.excludedModifiers) {
+            if (Arrays.asList(PsiModifier.MODIFIERS).contains(modifier)) {
+                modifiers.add(modifier);
+            } else {
+                LOG.warn("Ignoring unknown excluded modifier: " + modifier);
+            }
+        }
+
+        final List<Pattern> namePatterns = new ArrayList<>();
+        for (final String pattern : options.excludedNamePatterns) {
+            try {
+                namePatterns.add(Pattern.compile(pattern));
+            } catch (final PatternSyntaxException e) {
+                LOG.warn("Ignoring invalid excluded field name pattern: " + pattern, e);
+            }
+        }
+
+        return new InnerBuilderExclusionRules(toSet(options.excludedTypes), toSet(options.excludedAnnotations),
+                modifiers.toArray(new String[0]), namePatterns.toArray(new Pattern[0]));
+    }
+
+    /**
+     * Only looks at the field declaration, nothing is resolved except the qualified names of its annotations.
+     *
+     * @return true if the field matches any rule.
+     */
+    boolean isExcluded(@NotNull final PsiField field) {
+        for (final Pattern namePattern : namePatterns) {
+            if (namePattern.matcher(field.getName()).matches()) {
+                return true;
+            }
+        }
+
+        for (final String modifier : modifiers) {
+            if (field.hasModifierProperty(modifier)) {
+                return true;
+            }
+        }
+
+        if (!types.isEmpty() && types.contains(getTypeName(field.getType()))) {
+            return true;
+        }
+
+        if (!annotations.isEmpty()) {
+            for (final PsiAnnotation annotation : field.getAnnotations()) {
+                if (annotations.contains(annotation.getQualifiedName())) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Type arguments are dropped, a rule for {@code com.example.Cache} also excludes {@code Cache<K, V>} fields.
+     */
+    private static String getTypeName(final PsiType type) {
+        if (type instanceof PsiClassType && ((PsiClassType) type).hasParameters()) {
+            return ((PsiClassType) type).rawType().getCanonicalText();
+        }
+        return type.getCanonicalText();
+    }
+
+    private static Set<String> toSet(final Collection<String> names) {
+        final Set<String> set = new HashSet<>();
+        for (final String name : names) {
+            set.add(name.trim());
+        }
+        return set;
+    }
+}
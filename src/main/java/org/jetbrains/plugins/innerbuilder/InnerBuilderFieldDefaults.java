@@ -0,0 +1,255 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.psi.PsiArrayInitializerExpression;
+import com.intellij.psi.PsiAssignmentExpression;
+import com.intellij.psi.PsiBlockStatement;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassType;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiExpressionStatement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiIfStatement;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiReferenceExpression;
+import com.intellij.psi.PsiStatement;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders how the initializers of the builder fields carry over into the builder. A constant initializer becomes the
+ * initializer of the builder field. Any other initializer is tracked: the builder records in a boolean whether the
+ * field was set, and the constructor taking the builder only evaluates the default when it wasn't.
+ * <p>
+ * To do so the initializer moves from the field declaration into the constructor. That is only possible for fields
+ * of the target class when no other constructor relies on the initializer, otherwise the initializer stays and the
+ * constructor only skips the assignment. A moved default is read back from the constructor when regenerating.
+ */
+final class InnerBuilderFieldDefaults {
+    @NonNls
+    private static final String SET_FLAG_SUFFIX = "Set";
+
+    private final Map<PsiField, String> constantTexts = new HashMap<>();
+    private final List<PsiField> trackedFields = new ArrayList<>();
+    private final Map<PsiField, String> defaultTexts = new HashMap<>();
+    private final List<PsiField> movedInitializerFields = new ArrayList<>();
+
+    /**
+     * @param targetClass  the class the builder is generated for.
+     * @param setterFields the fields the builder has setters for, in order.
+     * @param enabled      true if initializers carry over, otherwise only defaults that were moved before are kept, so
+     *                     they aren't lost.
+     * @param track        true if fields with other initializers are tracked, only the constructor taking the builder
+     *                     can leave a field unassigned.
+     */
+    InnerBuilderFieldDefaults(final PsiClass targetClass, final Collection<PsiFieldMember> setterFields,
+                              final boolean enabled, final boolean track) {
+        final PsiMethod builderConstructor = findBuilderConstructor(targetClass);
+        final Map<String, String> movedDefaults = getMovedDefaultTexts(builderConstructor);
+        final boolean onlyBuilderConstructor = targetClass.getConstructors().length
+            == (builderConstructor != null ? 1 : 0);
+
+        for (final PsiFieldMember member : setterFields) {
+            final PsiField field = member.getElement();
+            final PsiExpression initializer = field.getInitializer();
+            if (initializer == null || isNullLiteral(initializer)) {
+                final String movedDefault = track ? movedDefaults.get(field.getName()) : null;
+                if (movedDefault != null) {
+                    trackedFields.add(field);
+                    defaultTexts.put(field, movedDefault);
+                }
+                continue;
+            }
+
+            if (!enabled) {
+                continue;
+            }
+            if (isConstant(initializer)) {
+                constantTexts.put(field, initializer.getText());
+            } else if (track) {
+                trackedFields.add(field);
+                if (onlyBuilderConstructor && targetClass.equals(field.getContainingClass())) {
+                    defaultTexts.put(field, getExpressionText(field, initializer));
+                    movedInitializerFields.add(field);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the initializer of the builder field, or {@code null} if it has none.
+     */
+    @Nullable
+    String getConstantText(final PsiField field) {
+        return constantTexts.get(field);
+    }
+
+    boolean isTracked(final PsiField field) {
+        return trackedFields.contains(field);
+    }
+
+    List<PsiField> getTrackedFields() {
+        return trackedFields;
+    }
+
+    /**
+     * @return the default the constructor assigns when the field wasn't set, or {@code null} if the field keeps its
+     * own initializer.
+     */
+    @Nullable
+    String getDefaultText(final PsiField field) {
+        return defaultTexts.get(field);
+    }
+
+    /**
+     * @return the fields whose initializer moves into the constructor taking the builder.
+     */
+    List<PsiField> getMovedInitializerFields() {
+        return movedInitializerFields;
+    }
+
+    static String getSetFlagName(final PsiField field) {
+        return field.getName() + SET_FLAG_SUFFIX;
+    }
+
+    /**
+     * @return the statement that marks the field as set, or {@code null} if the field isn't tracked.
+     */
+    @Nullable
+    String getMarkSetText(final PsiField field) {
+        return isTracked(field) ? String.format("%s = true;\n", getSetFlagName(field)) : null;
+    }
+
+    /**
+     * @param qName the qualifier of the builder being copied into, including the dot.
+     * @return the statements that mark all tracked fields of a copied builder as set.
+     */
+    String getCopyText(final String qName) {
+        final StringBuilder text = new StringBuilder();
+        for (final PsiField field : trackedFields) {
+            text.append(String.format("%s%s = true;\n", qName, getSetFlagName(field)));
+        }
+        return text.toString();
+    }
+
+    String getResetText() {
+        final StringBuilder text = new StringBuilder();
+        for (final PsiField field : trackedFields) {
+            text.append(String.format("this.%s = false;\n", getSetFlagName(field)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * An array initializer is only valid in a declaration, assigned it needs the array type.
+     */
+    private static String getExpressionText(final PsiField field, final PsiExpression initializer) {
+        if (initializer instanceof PsiArrayInitializerExpression) {
+            return String.format("new %s%s", field.getType().getCanonicalText(), initializer.getText());
+        }
+        return initializer.getText();
+    }
+
+    @Nullable
+    private static PsiMethod findBuilderConstructor(final PsiClass targetClass) {
+        final PsiClass builderClass = targetClass.findInnerClassByName("Builder", false);
+        if (builderClass == null) {
+            return null;
+        }
+
+        for (final PsiMethod constructor : targetClass.getConstructors()) {
+            final PsiParameter[] parameters = constructor.getParameterList().getParameters();
+            if (parameters.length == 1 && parameters[0].getType() instanceof PsiClassType
+                && builderClass.equals(((PsiClassType) parameters[0].getType()).resolve())) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the defaults of a previous generation, the {@code else} branches of {@code if (builder.xSet)}.
+     *
+     * @return the default texts by field name.
+     */
+    private static Map<String, String> getMovedDefaultTexts(@Nullable final PsiMethod builderConstructor) {
+        final Map<String, String> texts = new HashMap<>();
+        final PsiCodeBlock body = builderConstructor != null ? builderConstructor.getBody() : null;
+        if (body == null) {
+            return texts;
+        }
+
+        for (final PsiStatement statement : body.getStatements()) {
+            if (!(statement instanceof PsiIfStatement)) {
+                continue;
+            }
+
+            final PsiIfStatement ifStatement = (PsiIfStatement) statement;
+            final PsiExpression condition = ifStatement.getCondition();
+            final PsiAssignmentExpression assignment = getSingleAssignment(ifStatement.getElseBranch());
+            if (!(condition instanceof PsiReferenceExpression) || assignment == null
+                || assignment.getRExpression() == null
+                || !(assignment.getLExpression() instanceof PsiReferenceExpression)) {
+                continue;
+            }
+
+            final String fieldName = ((PsiReferenceExpression) assignment.getLExpression()).getReferenceName();
+            if (fieldName != null && (fieldName + SET_FLAG_SUFFIX).equals(
+                ((PsiReferenceExpression) condition).getReferenceName())) {
+                texts.put(fieldName, assignment.getRExpression().getText());
+            }
+        }
+        return texts;
+    }
+
+    @Nullable
+    private static PsiAssignmentExpression getSingleAssignment(@Nullable final PsiStatement branch) {
+        PsiStatement statement = branch;
+        if (branch instanceof PsiBlockStatement) {
+            final PsiStatement[] statements = ((PsiBlockStatement) branch).getCodeBlock().getStatements();
+            statement = statements.length == 1 ? statements[0] : null;
+        }
+
+        if (statement instanceof PsiExpressionStatement
+            && ((PsiExpressionStatement) statement).getExpression() instanceof PsiAssignmentExpression) {
+            return (PsiAssignmentExpression) ((PsiExpressionStatement) statement).getExpression();
+        }
+        return null;
+    }
+
+    private static boolean isNullLiteral(final PsiExpression expression) {
+        return expression instanceof PsiLiteralExpression && ((PsiLiteralExpression) expression).getValue() == null
+            && "null".equals(expression.getText());
+    }
+
+    /**
+     * A constant that refers to an instance constant can't be copied into the static builder.
+     */
+    private static boolean isConstant(final PsiExpression expression) {
+        if (!PsiUtil.isConstantExpression(expression)) {
+            return false;
+        }
+
+        for (final PsiReferenceExpression reference : PsiTreeUtil.collectElementsOfType(expression,
+            PsiReferenceExpression.class)) {
+            final PsiElement resolved = reference.resolve();
+            if (resolved instanceof PsiField && !((PsiField) resolved).hasModifierProperty(PsiModifier.STATIC)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,135 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiLiteralExpression;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiPrimitiveType;
+import com.intellij.psi.PsiType;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Renders the ordinal constants and the name lookup of the fields with setters, numbered in the order of the selected
+ * fields. Codecs use them to fill a builder by index: the generated setters dispatch with a {@code switch} on the
+ * ordinal, and {@code ordinalOf(String)} switches on the name, which compiles to a hash lookup without any map.
+ */
+final class InnerBuilderFieldOrdinals {
+    @NonNls
+    static final String CONSTANT_PREFIX = "FIELD_";
+    @NonNls
+    static final String ORDINAL_OF_METHOD_NAME = "ordinalOf";
+    @NonNls
+    static final String SET_METHOD_NAME = "set";
+
+    private final List<PsiField> fields = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * The names are the stripped field names, or the raw field names when two stripped names are the same, like
+     * {@code mName} and {@code name}, so neither the name lookup nor the constants have duplicates.
+     *
+     * @param setterFields the fields the builder has setters for, in order.
+     */
+    InnerBuilderFieldOrdinals(final Collection<PsiFieldMember> setterFields) {
+        final Set<String> constantNames = new HashSet<>();
+        boolean unique = true;
+        for (final PsiFieldMember member : setterFields) {
+            final PsiField field = member.getElement();
+            final String name = InnerBuilderGenerator.getStrippedFieldName(field.getName());
+            fields.add(field);
+            names.add(name);
+            unique &= constantNames.add(toUpperSnakeCase(name));
+        }
+
+        if (!unique) {
+            names.clear();
+            for (final PsiField field : fields) {
+                names.add(field.getName());
+            }
+        }
+    }
+
+    List<PsiField> getFields() {
+        return fields;
+    }
+
+    String getConstantName(final int ordinal) {
+        return CONSTANT_PREFIX + toUpperSnakeCase(names.get(ordinal));
+    }
+
+    String getConstantText(final int ordinal) {
+        return String.format("public static final int %s = %d;", getConstantName(ordinal), ordinal);
+    }
+
+    /**
+     * @return the body of {@code ordinalOf(String name)}, returning -1 for unknown names.
+     */
+    String getOrdinalOfBodyText() {
+        final StringBuilder text = new StringBuilder("switch (name) {\n");
+        for (int ordinal = 0; ordinal < fields.size(); ordinal++) {
+            text.append(String.format("case \"%s\":\nreturn %s;\n", names.get(ordinal), getConstantName(ordinal)));
+        }
+        return text.append("default:\nreturn -1;\n}\n").toString();
+    }
+
+    /**
+     * @return true if the element is an ordinal constant of a previous generation, which is dropped when the field it
+     * numbers is gone.
+     */
+    static boolean isOrdinalConstant(final PsiElement element) {
+        if (!(element instanceof PsiField)) {
+            return false;
+        }
+
+        final PsiField field = (PsiField) element;
+        return field.getName().startsWith(CONSTANT_PREFIX) && PsiType.INT.equals(field.getType())
+            && field.hasModifierProperty(PsiModifier.STATIC) && field.hasModifierProperty(PsiModifier.FINAL)
+            && field.getInitializer() instanceof PsiLiteralExpression;
+    }
+
+    /**
+     * @return the name of the primitive setter for fields of the type, or {@code null} if there's none.
+     */
+    @Nullable
+    @NonNls
+    static String getPrimitiveSetMethodName(final PsiType type) {
+        if (PsiType.INT.equals(type)) {
+            return "setInt";
+        }
+        if (PsiType.LONG.equals(type)) {
+            return "setLong";
+        }
+        return null;
+    }
+
+    /**
+     * @return the type the {@code Object} value of the field is cast to, boxed for primitives.
+     */
+    static String getCastTypeText(final PsiType type) {
+        if (type instanceof PsiPrimitiveType) {
+            return ((PsiPrimitiveType) type).getBoxedTypeName();
+        }
+        return type.getCanonicalText();
+    }
+
+    private static String toUpperSnakeCase(final String name) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(name.charAt(i - 1))) {
+                text.append('_');
+            }
+            text.append(c);
+        }
+        return text.toString().toUpperCase(Locale.ROOT);
+    }
+}
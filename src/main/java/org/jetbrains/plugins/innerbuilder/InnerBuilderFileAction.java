@@ -0,0 +1,33 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.CodeInsightActionHandler;
+import com.intellij.codeInsight.actions.BaseCodeInsightAction;
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Generates or refreshes the builders of every top-level and static nested class in the file.
+ */
+public class InnerBuilderFileAction extends BaseCodeInsightAction {
+    private final InnerBuilderFileHandler handler = new InnerBuilderFileHandler();
+
+    @NotNull
+    @Override
+    protected CodeInsightActionHandler getHandler() {
+        return handler;
+    }
+
+    @NotNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
+    @Override
+    protected boolean isValidForFile(@NotNull Project project, @NotNull Editor editor, @NotNull PsiFile file) {
+        return handler.isValidFor(editor, file);
+    }
+}
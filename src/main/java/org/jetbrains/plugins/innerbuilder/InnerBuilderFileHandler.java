@@ -0,0 +1,139 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.lang.LanguageCodeInsightActionHandler;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.EditorModificationUtil;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Pair;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiModifier;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates or refreshes the builders of all top-level and static nested classes of a file with the current options.
+ * A new builder gets all eligible fields, an existing one keeps its fields.
+ * <p>
+ * All classes are planned in one background read action and applied in one write action, followed by a single
+ * shorten and reformat pass over the generated code.
+ */
+public class InnerBuilderFileHandler implements LanguageCodeInsightActionHandler {
+    @NonNls
+    private static final String BUILDER_CLASS_NAME = "Builder";
+
+    @Override
+    public boolean isValidFor(final Editor editor, final PsiFile file) {
+        return file instanceof PsiJavaFile && editor.getProject() != null
+                && !collectTargetClasses((PsiJavaFile) file).isEmpty();
+    }
+
+    @Override
+    public boolean startInWriteAction() {
+        return false;
+    }
+
+    @Override
+    public void invoke(@NotNull final Project project, @NotNull final Editor editor, @NotNull final PsiFile file) {
+        final PsiDocumentManager psiDocumentManager = PsiDocumentManager.getInstance(project);
+        final Document currentDocument = psiDocumentManager.getDocument(file);
+        if (currentDocument == null || !(file instanceof PsiJavaFile)) {
+            return;
+        }
+
+        psiDocumentManager.commitDocument(currentDocument);
+
+        if (!EditorModificationUtil.checkModificationAllowed(editor)) {
+            return;
+        }
+
+        if (!FileDocumentManager.getInstance().requestWriting(editor.getDocument(), project)) {
+            return;
+        }
+
+        final InnerBuilderProfile profile = InnerBuilderProfile.resolve(project);
+        final InnerBuilderMetrics.Invocation invocation = InnerBuilderMetrics.start();
+        final List<Pair<InnerBuilderGenerator, InnerBuilderPlan>> plans = InnerBuilderUtils.computeWithProgress(
+                project, "Generating Builders", () -> plan(project, (PsiJavaFile) file, profile, invocation));
+        if (plans == null || plans.isEmpty()) {
+            return;
+        }
+
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            final List<PsiElement> generatedElements = new ArrayList<>();
+            for (final Pair<InnerBuilderGenerator, InnerBuilderPlan> plan : plans) {
+                generatedElements.addAll(plan.first.applyInFile(plan.second));
+            }
+            InnerBuilderGenerator.postProcess(project, generatedElements, invocation);
+        });
+
+        final List<String> conflicts = new ArrayList<>();
+        for (final Pair<InnerBuilderGenerator, InnerBuilderPlan> plan : plans) {
+            conflicts.addAll(plan.second.getConflicts());
+        }
+        InnerBuilderUtils.showConflicts(editor, conflicts);
+    }
+
+    private static List<Pair<InnerBuilderGenerator, InnerBuilderPlan>> plan(
+            final Project project, final PsiJavaFile file, final InnerBuilderProfile profile,
+            final InnerBuilderMetrics.Invocation invocation) {
+        final List<Pair<InnerBuilderGenerator, InnerBuilderPlan>> plans = new ArrayList<>();
+        for (final PsiClass targetClass : collectTargetClasses(file)) {
+            ProgressManager.checkCanceled();
+            final InnerBuilderHierarchyIndex index = new InnerBuilderHierarchyIndex(targetClass);
+            final List<PsiFieldMember> eligibleFields = invocation.time(InnerBuilderMetrics.Phase.COLLECT_FIELDS,
+                    () -> InnerBuilderCollector.collectFields(targetClass, null, index));
+            // an existing builder keeps its fields, fields left out of it stay out
+            final List<PsiFieldMember> fields = targetClass.findInnerClassByName(BUILDER_CLASS_NAME, false) != null
+                    ? InnerBuilderRegenerator.getBuilderFields(targetClass, eligibleFields) : eligibleFields;
+            if (fields == null || fields.isEmpty()) {
+                continue;
+            }
+
+            final InnerBuilderGenerator generator = new InnerBuilderGenerator(project, targetClass, fields,
+                    InnerBuilderCollector.collectNotNullFields(fields), index, profile, invocation);
+            plans.add(Pair.create(generator, generator.plan()));
+        }
+        return plans;
+    }
+
+    /**
+     * @return the top-level and static nested classes of the file, outer classes first. Classes nested in a builder
+     * are skipped, they are rewritten when their builder is.
+     */
+    static List<PsiClass> collectTargetClasses(final PsiJavaFile file) {
+        final List<PsiClass> targetClasses = new ArrayList<>();
+        for (final PsiClass psiClass : file.getClasses()) {
+            collectTargetClasses(psiClass, targetClasses);
+        }
+        return targetClasses;
+    }
+
+    private static void collectTargetClasses(final PsiClass psiClass, final List<PsiClass> targetClasses) {
+        if (BUILDER_CLASS_NAME.equals(psiClass.getName()) && psiClass.getContainingClass() != null) {
+            return;
+        }
+
+        if (!psiClass.isInterface() && !psiClass.isEnum() && !psiClass.isAnnotationType()
+                && !psiClass.hasModifierProperty(PsiModifier.ABSTRACT)) {
+            targetClasses.add(psiClass);
+        }
+
+        for (final PsiClass innerClass : psiClass.getInnerClasses()) {
+            if (innerClass.hasModifierProperty(PsiModifier.STATIC)) {
+                collectTargetClasses(innerClass, targetClasses);
+            }
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package org.jetbrains.plugins.innerbuilder;
 
 import com.intellij.codeInsight.generation.PsiFieldMember;
-import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.CommonClassNames;
 import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiCodeBlock;
@@ -13,26 +16,31 @@ import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiElementFactory;
 import com.intellij.psi.PsiField;
 import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaCodeReferenceElement;
+import com.intellij.psi.PsiMember;
 import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiModifier;
-import com.intellij.psi.PsiModifierList;
-import com.intellij.psi.PsiParameter;
 import com.intellij.psi.PsiPrimitiveType;
-import com.intellij.psi.PsiStatement;
+import com.intellij.psi.PsiReferenceList;
 import com.intellij.psi.PsiType;
+import com.intellij.psi.PsiWhiteSpace;
 import com.intellij.psi.codeStyle.CodeStyleManager;
 import com.intellij.psi.codeStyle.JavaCodeStyleManager;
-import com.intellij.psi.javadoc.PsiDocComment;
-import com.intellij.psi.util.PropertyUtil;
-import com.intellij.psi.util.PsiUtil;
+import com.intellij.psi.util.TypeConversionUtil;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.EnumSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class InnerBuilderGenerator implements Runnable {
@@ -49,538 +57,1424 @@ public class InnerBuilderGenerator implements Runnable {
     private static final String DEFAULT_BUILDER_METHOD_NAME = "newBuilder";
     @NonNls
     private static final String BUILDER_METHOD_NAME = "builder";
+    @NonNls
+    private static final String RESET_METHOD_NAME = "reset";
+    @NonNls
+    private static final String STAGE_SUFFIX = "Stage";
+    @NonNls
+    private static final String THREAD_LOCAL_FIELD_NAME = "THREAD_LOCAL_BUILDER";
 
     private final Project project;
-    private final PsiFile file;
-    private final Editor editor;
+    private final PsiClass targetClass;
     private final List<PsiFieldMember> selectedFields;
+    private final Collection<PsiField> requiredFields;
+    private final InnerBuilderHierarchyIndex index;
+    private final InnerBuilderProfile profile;
     private final PsiElementFactory psiElementFactory;
+    private final InnerBuilderMetrics.Invocation invocation;
+
+    /**
+     * Plans the builder in the background under a cancelable progress, then applies it in a short write action.
+     * Must be called from the event dispatch thread. Conflicts with hand-written code are shown in the editor.
+     */
+    public static void generate(final Project project, final Editor editor, final PsiClass targetClass,
+                                final List<PsiFieldMember> selectedFields, final Collection<PsiField> requiredFields,
+                                final InnerBuilderHierarchyIndex index, final InnerBuilderProfile profile,
+                                final InnerBuilderMetrics.Invocation invocation) {
+        final InnerBuilderGenerator builderGenerator = new InnerBuilderGenerator(project, targetClass,
+            selectedFields, requiredFields, index, profile, invocation);
+        final InnerBuilderPlan plan = InnerBuilderUtils.computeWithProgress(project, "Generating Builder",
+            builderGenerator::plan);
+        if (plan == null) {
+            return;
+        }
 
-    public static void generate(final Project project, final Editor editor, final PsiFile file,
-                                final List<PsiFieldMember> selectedFields) {
-        final Runnable builderGenerator = new InnerBuilderGenerator(project, file, editor, selectedFields);
-        ApplicationManager.getApplication().runWriteAction(builderGenerator);
+        ApplicationManager.getApplication().runWriteAction(
+            () -> builderGenerator.postProcess(builderGenerator.apply(plan)));
+        InnerBuilderUtils.showConflicts(editor, plan.getConflicts());
     }
 
-    private InnerBuilderGenerator(final Project project, final PsiFile file, final Editor editor,
-                                  final List<PsiFieldMember> selectedFields) {
+    /**
+     * @param requiredFields the fields {@code build()} checks were set, only used with
+     *                       {@link InnerBuilderOption#REQUIRED_FIELDS}.
+     */
+    public InnerBuilderGenerator(final Project project, final PsiClass targetClass,
+                                 final List<PsiFieldMember> selectedFields, final Collection<PsiField> requiredFields,
+                                 final InnerBuilderHierarchyIndex index, final InnerBuilderProfile profile) {
+        this(project, targetClass, selectedFields, requiredFields, index, profile, InnerBuilderMetrics.start());
+    }
+
+    /**
+     * @param invocation the timings of this generation, finished by {@link #postProcess(List)}.
+     */
+    InnerBuilderGenerator(final Project project, final PsiClass targetClass,
+                          final List<PsiFieldMember> selectedFields, final Collection<PsiField> requiredFields,
+                          final InnerBuilderHierarchyIndex index, final InnerBuilderProfile profile,
+                          final InnerBuilderMetrics.Invocation invocation) {
         this.project = project;
-        this.file = file;
-        this.editor = editor;
+        this.targetClass = targetClass;
         this.selectedFields = selectedFields;
+        this.requiredFields = requiredFields;
+        this.index = index;
+        this.profile = profile;
+        this.invocation = invocation;
         psiElementFactory = JavaPsiFacade.getInstance(project).getElementFactory();
     }
 
     @Override
     public void run() {
-        final PsiClass targetClass = InnerBuilderUtils.getStaticOrTopLevelClass(file, editor);
-        if (targetClass == null) {
-            return;
-        }
-        final Set<InnerBuilderOption> options = currentOptions();
-        final PsiClass builderClass = findOrCreateBuilderClass(targetClass);
-        final PsiType builderType = psiElementFactory.createTypeFromText(BUILDER_CLASS_NAME, null);
-        final PsiMethod constructor = generateConstructor(targetClass, builderType);
+        postProcess(apply(plan()));
+    }
 
-        addMethod(targetClass, null, constructor, true);
-        final Collection<PsiFieldMember> finalFields = new ArrayList<>();
-        final Collection<PsiFieldMember> nonFinalFields = new ArrayList<>();
+    /**
+     * Renders and parses the builder without modifying any PSI, only read access is needed.
+     *
+     * @return the plan to pass to {@link #apply(InnerBuilderPlan)}.
+     */
+    @NotNull
+    public InnerBuilderPlan plan() {
+        return invocation.time(InnerBuilderMetrics.Phase.PLAN, this::createPlan);
+    }
 
-        PsiElement lastAddedField = null;
+    private InnerBuilderPlan createPlan() {
+        final PsiClass existingBuilderClass = targetClass.findInnerClassByName(BUILDER_CLASS_NAME, false);
+        final PsiType builderType = psiElementFactory.createTypeFromText(BUILDER_CLASS_NAME, null);
+        final PsiType targetClassType = psiElementFactory.createType(targetClass);
+
+        final List<PsiFieldMember> finalFields = new ArrayList<>();
+        final List<PsiFieldMember> nonFinalFields = new ArrayList<>();
         for (final PsiFieldMember fieldMember : selectedFields) {
-            lastAddedField = findOrCreateField(builderClass, fieldMember, lastAddedField);
+            // record components are all final, but they are set through the builder like mutable fields
             if (fieldMember.getElement().hasModifierProperty(PsiModifier.FINAL)
-                && !options.contains(InnerBuilderOption.FINAL_SETTERS)) {
+                && !profile.contains(InnerBuilderOption.FINAL_SETTERS) && !targetClass.isRecord()) {
                 finalFields.add(fieldMember);
-                PsiUtil.setModifierProperty((PsiField) lastAddedField, PsiModifier.FINAL, true);
             } else {
                 nonFinalFields.add(fieldMember);
             }
         }
-        if (options.contains(InnerBuilderOption.NEW_BUILDER_METHOD)) {
-            final PsiMethod newBuilderMethod = generateNewBuilderMethod(builderType, targetClass, finalFields, options);
 
-            // Default to parent class (matches UI default - first dropdown item)
-            final PsiClass builderTarget = options.contains(InnerBuilderOption.BUILDER_METHOD_IN_BUILDER) ?
-                builderClass :
-                targetClass;
+        // a staged builder takes the final fields one by one through stage interfaces, not as constructor parameters
+        final boolean staged = profile.contains(InnerBuilderOption.STAGED_BUILDER) && !finalFields.isEmpty();
+        final List<PsiFieldMember> constructorFields = staged ? Collections.emptyList() : finalFields;
+        final List<PsiFieldMember> copiedFields = staged ? selectedFields : nonFinalFields;
+        final boolean newBuilderMethod = profile.contains(InnerBuilderOption.NEW_BUILDER_METHOD) || staged;
+
+        final InnerBuilderRequiredFields required = new InnerBuilderRequiredFields(nonFinalFields,
+            profile.contains(InnerBuilderOption.REQUIRED_FIELDS) ? requiredFields : Collections.emptyList());
+
+        // collection fields with element adders, the builder tracks whether it owns each collection
+        final Map<PsiField, InnerBuilderCollectionKind> collectionFields = new LinkedHashMap<>();
+        if (profile.contains(InnerBuilderOption.COLLECTION_ADDERS)) {
+            for (final PsiFieldMember member : nonFinalFields) {
+                final InnerBuilderCollectionKind kind = InnerBuilderCollectionKind.of(member.getElement().getType());
+                if (kind != null) {
+                    collectionFields.put(member.getElement(), kind);
+                }
+            }
+        }
 
-            addMethod(builderTarget, null, newBuilderMethod, false);
+        // field initializers as defaults, only the constructor taking the builder can skip a field that wasn't set
+        final InnerBuilderFieldDefaults defaults = new InnerBuilderFieldDefaults(targetClass, nonFinalFields,
+            profile.contains(InnerBuilderOption.FIELD_DEFAULTS),
+            !targetClass.isRecord() && !profile.contains(InnerBuilderOption.ALL_ARGS_CONSTRUCTOR));
+
+        final List<InnerBuilderMember> targetMembers = new ArrayList<>();
+        final List<InnerBuilderMember> builderMembers = new ArrayList<>();
+        final List<String> conflicts = new ArrayList<>();
+        // the declarations lose their initializers, only objects created from a builder still get the defaults
+        for (final PsiField field : defaults.getMovedInitializerFields()) {
+            conflicts.add(String.format("Moved the initializer of %s.%s into the constructor taking the builder",
+                targetClass.getName(), field.getName()));
         }
 
-        // builder constructor, accepting the final fields
-        if(finalFields.size() == 0 && !options.contains(InnerBuilderOption.NEW_BUILDER_METHOD)) {
-            final PsiMethod builderConstructorMethod = generateBuilderConstructor(builderClass, finalFields, options);
-            addMethod(builderClass, null, builderConstructorMethod, false);
+        // records are built with their canonical constructor
+        boolean allArgs = false;
+        if (!targetClass.isRecord()) {
+            final InnerBuilderMember allArgsConstructor = profile.contains(InnerBuilderOption.ALL_ARGS_CONSTRUCTOR) ?
+                generateAllArgsConstructor(targetClass) : null;
+
+            // only a constructor generated before is replaced, a hand-written constructor with the same parameters is
+            // kept and the target is built through the constructor taking the builder instead
+            final PsiMember existingConstructor = allArgsConstructor != null ?
+                allArgsConstructor.findExisting(targetClass) : null;
+            allArgs = allArgsConstructor != null && (existingConstructor == null
+                || isGeneratedConstructor((PsiMethod) existingConstructor, allArgsConstructor));
+            if (allArgsConstructor != null && !allArgs) {
+                conflicts.add(String.format("Kept the hand-written constructor %s(...) with the parameters of all "
+                    + "fields, %s is built from the builder instead", targetClass.getName(), targetClass.getName()));
+            }
+            targetMembers.add(allArgs ? allArgsConstructor :
+                generateConstructor(targetClass, builderType, collectionFields, defaults));
+        }
+
+        // a per-thread builder is created with the no-arg builder constructor
+        final boolean threadLocalBuilder = profile.contains(InnerBuilderOption.REUSABLE_BUILDER)
+            && profile.contains(InnerBuilderOption.THREAD_LOCAL_BUILDER) && finalFields.isEmpty();
+        if (threadLocalBuilder) {
+            builderMembers.add(generateThreadLocalField(targetClass));
+        }
+
+        // ordinals of the fields with setters, for codecs filling the builder by index
+        final InnerBuilderFieldOrdinals ordinals = profile.contains(InnerBuilderOption.INDEXED_SETTERS) ?
+            new InnerBuilderFieldOrdinals(nonFinalFields) : null;
+        if (ordinals != null) {
+            for (int ordinal = 0; ordinal < ordinals.getFields().size(); ordinal++) {
+                builderMembers.add(InnerBuilderMember.field(ordinals.getConstantName(ordinal), PsiType.INT, true,
+                    ordinals.getConstantText(ordinal), true));
+            }
+        }
+
+        for (final PsiFieldMember fieldMember : selectedFields) {
+            ProgressManager.checkCanceled();
+            builderMembers.add(generateField(fieldMember, constructorFields.contains(fieldMember),
+                defaults.getConstantText(fieldMember.getElement())));
         }
 
+        if (!required.isEmpty()) {
+            builderMembers.addAll(generateRequiredFieldsFields(targetClass, required));
+        }
+
+        for (final PsiField field : collectionFields.keySet()) {
+            builderMembers.add(InnerBuilderMember.field(getOwnedFieldName(field), PsiType.BOOLEAN, false,
+                String.format("private boolean %s;", getOwnedFieldName(field))));
+        }
+
+        for (final PsiField field : defaults.getTrackedFields()) {
+            final String setFlagName = InnerBuilderFieldDefaults.getSetFlagName(field);
+            builderMembers.add(InnerBuilderMember.field(setFlagName, PsiType.BOOLEAN, false,
+                String.format("private boolean %s;", setFlagName)));
+        }
+
+        // builder constructor, accepting the final fields
+        builderMembers.add(generateBuilderConstructor(constructorFields, newBuilderMethod));
+
         // builder copy constructor or static copy method
-        if (options.contains(InnerBuilderOption.COPY_CONSTRUCTOR)) {
-            if (options.contains(InnerBuilderOption.NEW_BUILDER_METHOD)) {
-                final PsiMethod copyBuilderMethod = generateCopyBuilderMethod(targetClass, builderType,
-                    nonFinalFields, options);
-                addMethod(targetClass, null, copyBuilderMethod, true);
+        if (profile.contains(InnerBuilderOption.COPY_CONSTRUCTOR)) {
+            if (newBuilderMethod) {
+                targetMembers.add(generateCopyBuilderMethod(targetClass, targetClassType, constructorFields,
+                    copiedFields, required, defaults));
+            } else {
+                builderMembers.add(generateCopyConstructor(targetClass, targetClassType, selectedFields,
+                    required, defaults));
+            }
+        }
+
+        if (profile.contains(InnerBuilderOption.TO_BUILDER)) {
+            targetMembers.add(generateToBuilderMethod(builderType, constructorFields, copiedFields, required,
+                defaults));
+        }
+
+        final List<String> stageNames = new ArrayList<>(staged ? finalFields.size() : 0);
+        for (final PsiFieldMember member : staged ? finalFields : Collections.<PsiFieldMember>emptyList()) {
+            stageNames.add(InnerBuilderUtils.capitalize(getStrippedFieldName(member.getElement().getName()))
+                + STAGE_SUFFIX);
+        }
+
+        if (newBuilderMethod) {
+            // Default to parent class (matches UI default - first dropdown item)
+            final boolean inBuilder = profile.contains(InnerBuilderOption.BUILDER_METHOD_IN_BUILDER);
+            final InnerBuilderMember builderMethod = generateNewBuilderMethod(targetClass, constructorFields,
+                staged ? stageNames.get(0) : BUILDER_CLASS_NAME, staged);
+            if (inBuilder) {
+                builderMembers.add(builderMethod);
             } else {
-                final PsiMethod copyConstructorBuilderMethod = generateCopyConstructor(targetClass, builderType,
-                    selectedFields, options);
-                addMethod(builderClass, null, copyConstructorBuilderMethod, true);
+                targetMembers.add(builderMethod);
             }
         }
 
+        // stage methods, each returning the next stage and the last one the builder with the optional setters
+        for (int i = 0; i < stageNames.size(); i++) {
+            builderMembers.add(generateStageSetter(finalFields.get(i),
+                i + 1 < stageNames.size() ? stageNames.get(i + 1) : BUILDER_CLASS_NAME));
+        }
+
         // builder methods
-        PsiElement lastAddedElement = null;
         for (final PsiFieldMember member : nonFinalFields) {
-            final PsiMethod setterMethod = generateBuilderSetter(builderType, member, options);
-            lastAddedElement = addMethod(builderClass, lastAddedElement, setterMethod, false);
+            ProgressManager.checkCanceled();
+            builderMembers.add(generateBuilderSetter(builderType, member, required, defaults,
+                collectionFields.containsKey(member.getElement())));
+        }
+
+        // element adders
+        for (final Map.Entry<PsiField, InnerBuilderCollectionKind> entry : collectionFields.entrySet()) {
+            builderMembers.addAll(generateCollectionMethods(targetClass, builderType, entry.getKey(),
+                entry.getValue(), required, defaults));
+        }
+
+        if (ordinals != null) {
+            builderMembers.addAll(generateIndexedSetters(targetClass, builderType, ordinals));
         }
 
         // builder.build() method
-        final PsiMethod buildMethod = generateBuildMethod(targetClass, options);
-        addMethod(builderClass, lastAddedElement, buildMethod, false);
+        builderMembers.add(generateBuildMethod(targetClass, required, collectionFields, allArgs));
+        if (!required.isEmpty()) {
+            builderMembers.add(InnerBuilderMember.method(InnerBuilderRequiredFields.MISSING_FIELDS_METHOD_NAME,
+                Collections.emptyList(), required.getMissingFieldsMethodText(), true));
+        }
+
+        if (profile.contains(InnerBuilderOption.INTERNED_BUILD)) {
+            builderMembers.addAll(generateInternedMembers(targetClass, required, defaults));
+        }
 
-        JavaCodeStyleManager.getInstance(project).shortenClassReferences(file);
-        CodeStyleManager.getInstance(project).reformat(builderClass);
+        if (profile.contains(InnerBuilderOption.REUSABLE_BUILDER)) {
+            builderMembers.add(generateBuildAndResetMethod(targetClass));
+            builderMembers.add(generateResetMethod(builderType, nonFinalFields, required, defaults,
+                collectionFields.keySet()));
+            if (threadLocalBuilder) {
+                builderMembers.add(generateForCurrentThreadMethod(builderType));
+            }
+        }
+
+        // the stage interfaces are siblings of the builder, a class cannot implement its own member interfaces
+        for (int i = 0; i < stageNames.size(); i++) {
+            targetMembers.add(generateStageInterface(stageNames.get(i), finalFields.get(i),
+                i + 1 < stageNames.size() ? stageNames.get(i + 1) : BUILDER_CLASS_NAME));
+        }
+
+        // parse everything at once, the target class members followed by the complete builder class
+        final StringBuilder text = new StringBuilder();
+        for (final InnerBuilderMember member : targetMembers) {
+            text.append(member.getText()).append("\n\n");
+        }
+        final List<InnerBuilderMember> generatedBuilderMembers = appendBuilderClass(text, targetClass,
+            existingBuilderClass, builderMembers, stageNames, ordinals != null);
+        final PsiClass generated = psiElementFactory.createClassFromText(text.toString(), targetClass);
+
+        return new InnerBuilderPlan(targetClass, existingBuilderClass, targetMembers, generatedBuilderMembers,
+            generated, defaults.getMovedInitializerFields(), conflicts);
     }
 
-    private PsiMethod generateCopyBuilderMethod(final PsiClass targetClass, final PsiType builderType,
-                                                final Collection<PsiFieldMember> fields,
-                                                final Set<InnerBuilderOption> options) {
-        final PsiMethod copyBuilderMethod = psiElementFactory.createMethod(getBuilderMethodName(targetClass, options), builderType);
-        PsiUtil.setModifierProperty(copyBuilderMethod, PsiModifier.STATIC, true);
-        PsiUtil.setModifierProperty(copyBuilderMethod, PsiModifier.PUBLIC, true);
+    /**
+     * Writes a plan to the PSI, planning again if anything changed since it was made. Requires a write action.
+     *
+     * @return the inserted or replaced elements, to pass to {@link #postProcess(List)}.
+     */
+    @NotNull
+    public List<PsiElement> apply(@NotNull final InnerBuilderPlan plan) {
+        final InnerBuilderPlan upToDatePlan = plan.isUpToDate() ? plan : plan();
+        return invocation.time(InnerBuilderMetrics.Phase.APPLY, () -> applyPlan(upToDatePlan));
+    }
 
-        final PsiType targetClassType = psiElementFactory.createType(targetClass);
-        final PsiParameter parameter = psiElementFactory.createParameter("copy", targetClassType);
-        final PsiModifierList parameterModifierList = parameter.getModifierList();
+    /**
+     * Like {@link #apply(InnerBuilderPlan)} for a plan made together with the plans of the other classes of the same
+     * file, which may have been applied already. Requires a write action.
+     */
+    @NotNull
+    List<PsiElement> applyInFile(@NotNull final InnerBuilderPlan plan) {
+        final InnerBuilderPlan validPlan = plan.isValid() ? plan : plan();
+        return invocation.time(InnerBuilderMetrics.Phase.APPLY, () -> applyPlan(validPlan));
+    }
 
-        if (parameterModifierList != null) {
-            if (options.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
-                parameterModifierList.addAnnotation(JSR305_NONNULL);
+    private List<PsiElement> applyPlan(final InnerBuilderPlan upToDatePlan) {
+
+        // only what was actually inserted or replaced is shortened and reformatted, hand-written code is left alone
+        final List<PsiElement> generatedElements = new ArrayList<>();
+        final List<InnerBuilderMember> targetMembers = upToDatePlan.getTargetMembers();
+        final PsiMethod[] generatedMethods = upToDatePlan.getGeneratedClass().getMethods();
+        final PsiClass[] generatedClasses = upToDatePlan.getGeneratedClass().getInnerClasses();
+        int methodIndex = 0;
+        int classIndex = 0;
+        for (final InnerBuilderMember member : targetMembers) {
+            final PsiMember generatedMember = member.isInnerClass() ?
+                generatedClasses[classIndex++] : generatedMethods[methodIndex++];
+            final PsiElement addedMember = addMember(targetClass, member, generatedMember);
+            if (addedMember != null) {
+                generatedElements.add(addedMember);
             }
         }
-        copyBuilderMethod.getParameterList().add(parameter);
-        final PsiCodeBlock copyBuilderBody = copyBuilderMethod.getBody();
-        if (copyBuilderBody != null) {
-            final StringBuilder copyBuilderParameters = new StringBuilder();
-            for (final PsiFieldMember fieldMember : selectedFields) {
-                if (fieldMember.getElement().hasModifierProperty(PsiModifier.FINAL)
-                    && !options.contains(InnerBuilderOption.FINAL_SETTERS)) {
 
-                    if (copyBuilderParameters.length() > 0) {
-                        copyBuilderParameters.append(", ");
-                    }
+        // the constructor taking the builder evaluates these defaults now
+        for (final PsiField field : upToDatePlan.getMovedInitializerFields()) {
+            if (field.isValid() && field.getInitializer() != null) {
+                field.setInitializer(null);
+                invocation.elementReplaced();
+            }
+        }
 
-                    copyBuilderParameters.append(String.format("copy.%s", fieldMember.getElement().getName()));
+        final PsiClass existingBuilderClass = upToDatePlan.getExistingBuilderClass();
+        // the builder class is parsed after all target class members
+        final PsiClass generatedBuilderClass = generatedClasses[generatedClasses.length - 1];
+        if (existingBuilderClass == null) {
+            generatedElements.add(targetClass.add(generatedBuilderClass));
+            invocation.elementCreated();
+        } else {
+            final PsiClass builderClass = (PsiClass) existingBuilderClass.replace(generatedBuilderClass);
+            invocation.elementReplaced();
+            for (final InnerBuilderMember member : upToDatePlan.getGeneratedBuilderMembers()) {
+                final PsiMember generatedMember = member.findExisting(builderClass);
+                if (generatedMember != null) {
+                    generatedElements.add(generatedMember);
                 }
             }
-            if (options.contains(InnerBuilderOption.NEW_BUILDER_METHOD)) {
-                final PsiStatement newBuilderStatement = psiElementFactory.createStatementFromText(String.format(
-                        "%s builder = new %s(%s);", builderType.getPresentableText(),
-                        builderType.getPresentableText(), copyBuilderParameters),
-                    copyBuilderMethod);
-                copyBuilderBody.add(newBuilderStatement);
+        }
 
-                addCopyBody(fields, copyBuilderMethod, "builder.");
-                copyBuilderBody.add(psiElementFactory.createStatementFromText("return builder;", copyBuilderMethod));
+        return generatedElements;
+    }
+
+    /**
+     * Shortens class references in and reformats the given generated elements, then records the timings of this
+     * generation. Requires a write action.
+     */
+    public void postProcess(@NotNull final List<PsiElement> generatedElements) {
+        postProcess(project, generatedElements, invocation);
+    }
+
+    /**
+     * Shortens class references in the given generated elements, then reformats them with one pass per file, and
+     * records the timings. Requires a write action.
+     *
+     * @param generatedElements the elements generated for one or more classes.
+     */
+    static void postProcess(@NotNull final Project project, @NotNull final List<PsiElement> generatedElements,
+                            @NotNull final InnerBuilderMetrics.Invocation invocation) {
+        final JavaCodeStyleManager javaCodeStyleManager = JavaCodeStyleManager.getInstance(project);
+        final CodeStyleManager codeStyleManager = CodeStyleManager.getInstance(project);
+        final List<PsiElement> shortenedElements = new ArrayList<>(generatedElements.size());
+        invocation.time(InnerBuilderMetrics.Phase.SHORTEN_CLASS_REFERENCES, () -> {
+            for (final PsiElement element : generatedElements) {
+                if (element.isValid()) {
+                    shortenedElements.add(javaCodeStyleManager.shortenClassReferences(element));
+                }
+            }
+        });
+        invocation.time(InnerBuilderMetrics.Phase.REFORMAT, () -> {
+            // ranges are taken once all references are shortened, shortening moves the text after it
+            final Map<PsiFile, List<TextRange>> rangesByFile = new LinkedHashMap<>();
+            for (final PsiElement element : shortenedElements) {
+                rangesByFile.computeIfAbsent(element.getContainingFile(), key -> new ArrayList<>())
+                    .add(element.getTextRange());
+            }
+            for (final Map.Entry<PsiFile, List<TextRange>> entry : rangesByFile.entrySet()) {
+                codeStyleManager.reformatText(entry.getKey(), entry.getValue());
+            }
+        });
+        invocation.finish();
+    }
+
+    /**
+     * Renders the builder class, reusing whatever the existing builder class already has.
+     *
+     * @param stageNames       the stage interfaces, declared next to the builder class, that the builder implements.
+     * @param ordinalConstants true if the ordinal constants are generated, the ones of removed fields are dropped.
+     * @return the members that were rendered from scratch rather than taken over from the existing builder class.
+     */
+    private List<InnerBuilderMember> appendBuilderClass(final StringBuilder text, final PsiClass targetClass,
+                                                        @Nullable final PsiClass existingBuilderClass,
+                                                        final List<InnerBuilderMember> members,
+                                                        final List<String> stageNames,
+                                                        final boolean ordinalConstants) {
+        final PsiElement lBrace = existingBuilderClass != null ? existingBuilderClass.getLBrace() : null;
+        final PsiElement rBrace = existingBuilderClass != null ? existingBuilderClass.getRBrace() : null;
+        if (lBrace == null || rBrace == null) {
+            text.append(builderComment(targetClass));
+            text.append(builderAnnotation());
+            text.append("public static final class ").append(BUILDER_CLASS_NAME);
+            if (!stageNames.isEmpty()) {
+                text.append(" implements ").append(String.join(", ", stageNames));
+            }
+            text.append(" {");
+        } else {
+            appendBuilderHeader(text, targetClass, existingBuilderClass, lBrace, stageNames);
+        }
+
+        final List<InnerBuilderMember> generatedMembers = new ArrayList<>();
+        final Set<PsiElement> matchedMembers = new HashSet<>();
+        for (final InnerBuilderMember member : members) {
+            final PsiMember existingMember = member.findExisting(existingBuilderClass);
+            if (existingMember != null) {
+                matchedMembers.add(existingMember);
+            }
+
+            if (member.keepsExisting(existingMember)) {
+                appendExisting(text, existingMember);
             } else {
-                final PsiStatement newBuilderStatement = psiElementFactory.createStatementFromText(String.format(
-                        "return new %s(%s);", builderType.getPresentableText(),
-                        copyBuilderParameters),
-                    copyBuilderMethod);
-                copyBuilderBody.add(newBuilderStatement);
+                generatedMembers.add(member);
+                text.append("\n\n").append(member.getText());
+            }
+        }
+
+        // never remove anything that was added to the builder by hand, except ordinal constants of removed fields
+        if (lBrace != null && rBrace != null) {
+            for (PsiElement child = lBrace.getNextSibling(); child != null && child != rBrace;
+                 child = child.getNextSibling()) {
+                if ((child instanceof PsiMember || child instanceof PsiComment) && !matchedMembers.contains(child)
+                    && !(ordinalConstants && InnerBuilderFieldOrdinals.isOrdinalConstant(child))) {
+                    appendExisting(text, child);
+                }
             }
         }
-        return copyBuilderMethod;
+
+        final PsiElement beforeRBrace = rBrace != null ? rBrace.getPrevSibling() : null;
+        text.append(beforeRBrace instanceof PsiWhiteSpace ? beforeRBrace.getText() : "\n").append('}');
+        return generatedMembers;
     }
 
-    private String getBuilderMethodName(final PsiClass psiClass, final Set<InnerBuilderOption> options) {
-        if (options.contains(InnerBuilderOption.STATIC_BUILDER_NEW_BUILDER_NAME)) {
-            return DEFAULT_BUILDER_METHOD_NAME;
+    /**
+     * Keeps the existing header: comment, annotations, modifiers and extends/implements lists. Stage interfaces of a
+     * previous generation are replaced by the current ones.
+     */
+    private static void appendBuilderHeader(final StringBuilder text, final PsiClass targetClass,
+                                            final PsiClass existingBuilderClass, final PsiElement lBrace,
+                                            final List<String> stageNames) {
+        final String classText = existingBuilderClass.getText();
+        final int classStart = existingBuilderClass.getTextRange().getStartOffset();
+        final int headerLength = lBrace.getTextRange().getEndOffset() - classStart;
+        final PsiReferenceList implementsList = existingBuilderClass.getImplementsList();
+
+        final Set<String> interfaceNames = new LinkedHashSet<>();
+        if (implementsList != null) {
+            for (final PsiJavaCodeReferenceElement reference : implementsList.getReferenceElements()) {
+                final PsiElement resolved = reference.resolve();
+                final boolean previousStage = resolved instanceof PsiClass
+                    && targetClass.equals(((PsiClass) resolved).getContainingClass())
+                    && reference.getText().endsWith(STAGE_SUFFIX);
+                if (!previousStage) {
+                    interfaceNames.add(reference.getText());
+                }
+            }
         }
+        interfaceNames.addAll(stageNames);
 
-        if (options.contains(InnerBuilderOption.STATIC_BUILDER_BUILDER_NAME)) {
-            return BUILDER_METHOD_NAME;
+        if (implementsList == null || implementsList.getTextLength() == 0) {
+            if (stageNames.isEmpty()) {
+                text.append(classText, 0, headerLength);
+            } else {
+                final int lBraceStart = lBrace.getTextRange().getStartOffset() - classStart;
+                text.append(classText.substring(0, lBraceStart).trim());
+                text.append(" implements ").append(String.join(", ", interfaceNames)).append(" {");
+            }
+            return;
         }
 
-        if (options.contains(InnerBuilderOption.STATIC_BUILDER_NEW_CLASS_NAME)) {
-            return "new" + psiClass.getName();
+        final int listStart = implementsList.getTextRange().getStartOffset() - classStart;
+        final int listEnd = implementsList.getTextRange().getEndOffset() - classStart;
+        text.append(classText, 0, listStart);
+        if (!interfaceNames.isEmpty()) {
+            text.append("implements ").append(String.join(", ", interfaceNames));
         }
+        text.append(classText, listEnd, headerLength);
+    }
 
-        if(options.contains(InnerBuilderOption.STATIC_BUILDER_NEW_CLASS_NAME_BUILDER)) {
-            return "new" + psiClass.getName() + "Builder";
+    /**
+     * Appends an existing member together with the whitespace in front of it, so its formatting is kept as is.
+     */
+    private static void appendExisting(final StringBuilder text, final PsiElement member) {
+        final PsiElement previous = member.getPrevSibling();
+        if (previous instanceof PsiWhiteSpace && previous.getText().indexOf('\n') >= 0) {
+            text.append(previous.getText());
+        } else {
+            text.append("\n\n");
         }
 
-        return DEFAULT_BUILDER_METHOD_NAME;
+        text.append(getMemberText(member));
     }
 
-    private PsiMethod generateCopyConstructor(final PsiClass targetClass, final PsiType builderType,
-                                              final Collection<PsiFieldMember> nonFinalFields,
-                                              final Set<InnerBuilderOption> options) {
+    private static String getMemberText(final PsiElement member) {
+        if (member instanceof PsiField) {
+            return InnerBuilderUtils.getDeclarationText((PsiField) member);
+        }
 
-        final PsiMethod copyConstructor = psiElementFactory.createConstructor(builderType.getPresentableText());
-        PsiUtil.setModifierProperty(copyConstructor, PsiModifier.PUBLIC, true);
+        return member.getText();
+    }
 
-        final PsiType targetClassType = psiElementFactory.createType(targetClass);
-        final PsiParameter constructorParameter = psiElementFactory.createParameter("copy", targetClassType);
-        final PsiModifierList parameterModifierList = constructorParameter.getModifierList();
+    private InnerBuilderMember generateCopyBuilderMethod(final PsiClass targetClass, final PsiType targetClassType,
+                                                         final Collection<PsiFieldMember> finalFields,
+                                                         final Collection<PsiFieldMember> fields,
+                                                         final InnerBuilderRequiredFields required,
+                                                         final InnerBuilderFieldDefaults defaults) {
+        final String methodName = getBuilderMethodName(targetClass);
+        final StringBuilder text = new StringBuilder("public static ");
+        text.append(BUILDER_CLASS_NAME).append(' ').append(methodName).append('(');
+        if (profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+            text.append('@').append(JSR305_NONNULL).append(' ');
+        }
+        text.append(targetClass.getName()).append(" copy) {\n");
 
-        if (parameterModifierList != null) {
-            if (options.contains(InnerBuilderOption.JSR305_ANNOTATIONS))
-                parameterModifierList.addAnnotation(JSR305_NONNULL);
+        final StringBuilder copyBuilderParameters = new StringBuilder();
+        for (final PsiFieldMember fieldMember : finalFields) {
+            if (copyBuilderParameters.length() > 0) {
+                copyBuilderParameters.append(", ");
+            }
+
+            copyBuilderParameters.append(String.format("copy.%s", fieldMember.getElement().getName()));
         }
-        copyConstructor.getParameterList().add(constructorParameter);
-        addCopyBody(nonFinalFields, copyConstructor, "this.");
-        return copyConstructor;
+
+        text.append(String.format("%1$s builder = new %1$s(%2$s);\n", BUILDER_CLASS_NAME, copyBuilderParameters));
+        appendCopyBody(text, fields, "builder.", required, defaults);
+        text.append("return builder;\n}");
+
+        return InnerBuilderMember.method(methodName, Collections.singletonList(targetClassType), text.toString(),
+            true);
     }
 
-    private void addCopyBody(final Collection<PsiFieldMember> fields, final PsiMethod method, final String qName) {
-        final PsiCodeBlock methodBody = method.getBody();
-        if (methodBody == null) {
-            return;
+    /**
+     * Unlike the copy constructor, reads the fields directly and hands the same references to the builder, so
+     * collections are shared with this object instead of being copied.
+     */
+    private InnerBuilderMember generateToBuilderMethod(final PsiType builderType,
+                                                       final Collection<PsiFieldMember> finalFields,
+                                                       final Collection<PsiFieldMember> fields,
+                                                       final InnerBuilderRequiredFields required,
+                                                       final InnerBuilderFieldDefaults defaults) {
+        final StringBuilder text = new StringBuilder(methodComment(
+            "Returns a builder initialized with the values of this object, sharing its field values.",
+            "a new builder"));
+        if (profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+            text.append('@').append(JSR305_NONNULL).append('\n');
         }
-        for (final PsiFieldMember member : fields) {
-            final PsiField field = member.getElement();
-            final String fieldName = field.getName();
+        text.append("public ").append(builderType.getCanonicalText()).append(" toBuilder() {\n");
 
-            // Use direct field access if public, otherwise use getter
-            final String accessExpr;
-            if (field.hasModifierProperty(PsiModifier.PUBLIC)) {
-                accessExpr = "copy." + fieldName;
-            } else {
-                accessExpr = String.format("copy.get%s()", InnerBuilderUtils.capitalize(fieldName));
+        final StringBuilder arguments = new StringBuilder();
+        for (final PsiFieldMember member : finalFields) {
+            if (arguments.length() > 0) {
+                arguments.append(", ");
             }
+            arguments.append(getFieldReadText(member.getElement()));
+        }
+        text.append(String.format("final %1$s builder = new %1$s(%2$s);\n", BUILDER_CLASS_NAME, arguments));
 
-            final PsiStatement assignStatement = psiElementFactory.createStatementFromText(
-                String.format("%s%s = %s;", qName, fieldName, accessExpr), method);
-            methodBody.add(assignStatement);
+        for (final PsiFieldMember member : fields) {
+            text.append(String.format("builder.%s = %s;\n", member.getElement().getName(),
+                getFieldReadText(member.getElement())));
+        }
+        if (!required.isEmpty()) {
+            text.append(required.getCopyText("builder.", BUILDER_CLASS_NAME));
         }
+        text.append(defaults.getCopyText("builder."));
+        text.append("return builder;\n}");
+
+        return InnerBuilderMember.method("toBuilder", Collections.emptyList(), text.toString(), true);
     }
 
-    private PsiMethod generateBuilderConstructor(final PsiClass builderClass,
-                                                 final Collection<PsiFieldMember> finalFields,
-                                                 final Set<InnerBuilderOption> options) {
+    /**
+     * @return the field itself if the target class can access it, otherwise its getter.
+     */
+    private String getFieldReadText(final PsiField field) {
+        return getFieldReadText("this", field);
+    }
 
-        final PsiMethod builderConstructor = psiElementFactory.createConstructor(builderClass.getName());
-        if (options.contains(InnerBuilderOption.NEW_BUILDER_METHOD)) {
-            PsiUtil.setModifierProperty(builderConstructor, PsiModifier.PRIVATE, true);
-        } else {
-            PsiUtil.setModifierProperty(builderConstructor, PsiModifier.PUBLIC, true);
+    /**
+     * @param qualifier an expression of the target class type.
+     * @return the field of the qualifier if the target class can access it, otherwise its getter.
+     */
+    private String getFieldReadText(final String qualifier, final PsiField field) {
+        final PsiClass containingClass = field.getContainingClass();
+        if (containingClass == null || containingClass == targetClass || index.isAccessible(field)) {
+            return String.format("%s.%s", qualifier, field.getName());
+        }
+        final String getterText = String.format("get%s()", InnerBuilderUtils.capitalize(field.getName()));
+        return "this".equals(qualifier) ? getterText : String.format("%s.%s", qualifier, getterText);
+    }
+
+    private String getBuilderMethodName(final PsiClass psiClass) {
+        if (profile.contains(InnerBuilderOption.STATIC_BUILDER_NEW_BUILDER_NAME)) {
+            return DEFAULT_BUILDER_METHOD_NAME;
         }
-        final PsiCodeBlock builderConstructorBody = builderConstructor.getBody();
-        if (builderConstructorBody != null) {
-            for (final PsiFieldMember member : finalFields) {
-                final PsiField field = member.getElement();
-                final PsiType fieldType = field.getType();
-                final String fieldName = field.getName();
 
-                final PsiParameter parameter = psiElementFactory.createParameter(fieldName, fieldType);
-                final PsiModifierList parameterModifierList = parameter.getModifierList();
-                final boolean useJsr305 = options.contains(InnerBuilderOption.JSR305_ANNOTATIONS);
+        if (profile.contains(InnerBuilderOption.STATIC_BUILDER_BUILDER_NAME)) {
+            return BUILDER_METHOD_NAME;
+        }
 
-                if (!InnerBuilderUtils.isPrimitive(field) && parameterModifierList != null) {
-                    if (useJsr305) parameterModifierList.addAnnotation(JSR305_NONNULL);
-                }
+        if (profile.contains(InnerBuilderOption.STATIC_BUILDER_NEW_CLASS_NAME)) {
+            return "new" + psiClass.getName();
+        }
 
-                builderConstructor.getParameterList().add(parameter);
-                final PsiStatement assignStatement = psiElementFactory.createStatementFromText(String.format(
-                    "this.%1$s = %1$s;", fieldName), builderConstructor);
-                builderConstructorBody.add(assignStatement);
-            }
+        if(profile.contains(InnerBuilderOption.STATIC_BUILDER_NEW_CLASS_NAME_BUILDER)) {
+            return "new" + psiClass.getName() + "Builder";
+        }
+
+        return DEFAULT_BUILDER_METHOD_NAME;
+    }
+
+    private InnerBuilderMember generateCopyConstructor(final PsiClass targetClass, final PsiType targetClassType,
+                                                       final Collection<PsiFieldMember> fields,
+                                                       final InnerBuilderRequiredFields required,
+                                                       final InnerBuilderFieldDefaults defaults) {
+        final StringBuilder text = new StringBuilder("public ");
+        text.append(BUILDER_CLASS_NAME).append('(');
+        if (profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+            text.append('@').append(JSR305_NONNULL).append(' ');
         }
+        text.append(targetClass.getName()).append(" copy) {\n");
+        appendCopyBody(text, fields, "this.", required, defaults);
+        text.append('}');
 
-        return builderConstructor;
+        return InnerBuilderMember.method(BUILDER_CLASS_NAME, Collections.singletonList(targetClassType),
+            text.toString(), true);
     }
 
-    private PsiMethod generateNewBuilderMethod(final PsiType builderType, PsiClass targetClass, final Collection<PsiFieldMember> finalFields,
-                                               final Set<InnerBuilderOption> options) {
-        final PsiMethod newBuilderMethod = psiElementFactory.createMethod(getBuilderMethodName(targetClass, options), builderType);
-        PsiUtil.setModifierProperty(newBuilderMethod, PsiModifier.STATIC, true);
-        PsiUtil.setModifierProperty(newBuilderMethod, PsiModifier.PUBLIC, true);
+    private void appendCopyBody(final StringBuilder text, final Collection<PsiFieldMember> fields,
+                                final String qName, final InnerBuilderRequiredFields required,
+                                final InnerBuilderFieldDefaults defaults) {
+        for (final PsiFieldMember member : fields) {
+            final PsiField field = member.getElement();
+            text.append(String.format("%s%s = %s;\n", qName, field.getName(), getAccessText("copy", field)));
+        }
+
+        // a copy has all of its fields set
+        if (!required.isEmpty()) {
+            text.append(required.getCopyText(qName, BUILDER_CLASS_NAME));
+        }
+        text.append(defaults.getCopyText(qName));
+    }
+
+    private InnerBuilderMember generateBuilderConstructor(final Collection<PsiFieldMember> finalFields,
+                                                          final boolean newBuilderMethod) {
+        final StringBuilder text = new StringBuilder();
+        text.append(newBuilderMethod ? "private " : "public ");
+        text.append(BUILDER_CLASS_NAME).append('(');
+        appendParameters(text, finalFields);
+        text.append(") {\n");
+        for (final PsiFieldMember member : finalFields) {
+            text.append(String.format("this.%1$s = %1$s;\n", member.getElement().getName()));
+        }
+        text.append('}');
+
+        return InnerBuilderMember.method(BUILDER_CLASS_NAME, getTypes(finalFields), text.toString(), false);
+    }
+
+    /**
+     * @param returnTypeText the builder, or the first stage of a staged builder.
+     * @param staged         true if the method returns the first stage, its return type changes with the fields.
+     */
+    private InnerBuilderMember generateNewBuilderMethod(final PsiClass targetClass,
+                                                        final Collection<PsiFieldMember> finalFields,
+                                                        final String returnTypeText, final boolean staged) {
+        final String methodName = getBuilderMethodName(targetClass);
+        final StringBuilder text = new StringBuilder("public static ");
+        text.append(returnTypeText).append(' ').append(methodName).append('(');
+        appendParameters(text, finalFields);
+        text.append(") {\n");
 
         final StringBuilder fieldList = new StringBuilder();
-        if (!finalFields.isEmpty()) {
-            for (final PsiFieldMember member : finalFields) {
-                final PsiField field = member.getElement();
-                final PsiType fieldType = field.getType();
-                final String fieldName = field.getName();
-
-                final PsiParameter parameter = psiElementFactory.createParameter(fieldName, fieldType);
-                final PsiModifierList parameterModifierList = parameter.getModifierList();
-                if (parameterModifierList != null) {
-                    if (!InnerBuilderUtils.isPrimitive(field)) {
-                        if (options.contains(InnerBuilderOption.JSR305_ANNOTATIONS))
-                            parameterModifierList.addAnnotation(JSR305_NONNULL);
-                    }
-                }
-                newBuilderMethod.getParameterList().add(parameter);
-                if (fieldList.length() > 0) {
-                    fieldList.append(", ");
-                }
-                fieldList.append(fieldName);
+        for (final PsiFieldMember member : finalFields) {
+            if (fieldList.length() > 0) {
+                fieldList.append(", ");
+            }
+            fieldList.append(member.getElement().getName());
+        }
+        text.append(String.format("return new %s(%s);\n}", BUILDER_CLASS_NAME, fieldList));
+
+        return InnerBuilderMember.method(methodName, getTypes(finalFields), text.toString(), staged);
+    }
+
+    private void appendParameters(final StringBuilder text, final Collection<PsiFieldMember> fields) {
+        boolean first = true;
+        for (final PsiFieldMember member : fields) {
+            final PsiField field = member.getElement();
+            if (!first) {
+                text.append(", ");
+            }
+            first = false;
+
+            if (!InnerBuilderUtils.isPrimitive(field) && profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+                text.append('@').append(JSR305_NONNULL).append(' ');
             }
+            text.append(field.getType().getCanonicalText()).append(' ').append(field.getName());
         }
-        final PsiCodeBlock newBuilderMethodBody = newBuilderMethod.getBody();
-        if (newBuilderMethodBody != null) {
-            final PsiStatement newStatement = psiElementFactory.createStatementFromText(String.format(
-                    "return new %s(%s);", builderType.getPresentableText(), fieldList),
-                newBuilderMethod);
-            newBuilderMethodBody.add(newStatement);
+    }
+
+    private static List<PsiType> getTypes(final Collection<PsiFieldMember> fields) {
+        final List<PsiType> types = new ArrayList<>(fields.size());
+        for (final PsiFieldMember member : fields) {
+            types.add(member.getElement().getType());
         }
-        return newBuilderMethod;
+        return types;
     }
 
-    private PsiMethod generateBuilderSetter(final PsiType builderType, final PsiFieldMember member,
-                                            final Set<InnerBuilderOption> options) {
+    private InnerBuilderMember generateBuilderSetter(final PsiType builderType, final PsiFieldMember member,
+                                                     final InnerBuilderRequiredFields required,
+                                                     final InnerBuilderFieldDefaults defaults,
+                                                     final boolean collectionField) {
 
         final PsiField field = member.getElement();
         final PsiType fieldType = field.getType();
         final String rawFieldName = field.getName();
 
         // Strip one-letter prefix (e.g., mAppId -> appId) for method naming only
-        final String strippedFieldName = InnerBuilderUtils.hasOneLetterPrefix(rawFieldName) ?
-            Character.toLowerCase(rawFieldName.charAt(1)) + rawFieldName.substring(2) : rawFieldName;
+        final String strippedFieldName = getStrippedFieldName(rawFieldName);
 
-        final String methodName;
-        if (options.contains(InnerBuilderOption.WITH_NOTATION)) {
-            methodName = String.format("with%s", InnerBuilderUtils.capitalize(strippedFieldName));
-        } else if (options.contains(InnerBuilderOption.SET_NOTATION)) {
-            methodName = String.format("set%s", InnerBuilderUtils.capitalize(strippedFieldName));
-        } else {
-            methodName = strippedFieldName;
+        final String methodName = getSetterName(strippedFieldName);
+        final String parameterName = getSetterParameterName(strippedFieldName);
+        final boolean useJsr305 = profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS);
+
+        final StringBuilder text = new StringBuilder(setterComment(strippedFieldName, parameterName));
+        if (useJsr305) {
+            text.append('@').append(JSR305_NONNULL).append('\n');
+        }
+        text.append("public ").append(builderType.getCanonicalText()).append(' ').append(methodName).append('(');
+        if (useJsr305 && !(fieldType instanceof PsiPrimitiveType)) {
+            text.append('@').append(JSR305_NONNULL).append(' ');
+        }
+        text.append(fieldType.getCanonicalText()).append(' ').append(parameterName).append(") {\n");
+
+        final String actualFieldName = profile.contains(InnerBuilderOption.FIELD_NAMES) ?
+            "this." + rawFieldName :
+            rawFieldName;
+        text.append(String.format("%s = %s;\n", actualFieldName, parameterName));
+        if (collectionField) {
+            // the collection belongs to the caller, the next element adder copies it
+            text.append(String.format("%s = false;\n", getOwnedFieldName(field)));
+        }
+        appendMarkSet(text, field, required, defaults);
+        text.append("return this;\n}");
+
+        // with required fields the bits of the setters change whenever the required fields do
+        return InnerBuilderMember.method(methodName, Collections.singletonList(fieldType), text.toString(),
+            !required.isEmpty() || collectionField || defaults.isTracked(field));
+    }
+
+    private static void appendMarkSet(final StringBuilder text, final PsiField field,
+                                      final InnerBuilderRequiredFields required,
+                                      final InnerBuilderFieldDefaults defaults) {
+        final String markSetText = required.getMarkSetText(field);
+        if (markSetText != null) {
+            text.append(markSetText);
+        }
+        final String markDefaultSetText = defaults.getMarkSetText(field);
+        if (markDefaultSetText != null) {
+            text.append(markDefaultSetText);
         }
+    }
 
-        final String parameterName = options.contains(InnerBuilderOption.FIELD_NAMES) ?
+    private String getSetterName(final String strippedFieldName) {
+        if (profile.contains(InnerBuilderOption.WITH_NOTATION)) {
+            return String.format("with%s", InnerBuilderUtils.capitalize(strippedFieldName));
+        } else if (profile.contains(InnerBuilderOption.SET_NOTATION)) {
+            return String.format("set%s", InnerBuilderUtils.capitalize(strippedFieldName));
+        }
+        return strippedFieldName;
+    }
+
+    private String getSetterParameterName(final String strippedFieldName) {
+        return profile.contains(InnerBuilderOption.FIELD_NAMES) ?
             strippedFieldName :
             !BUILDER_SETTER_DEFAULT_PARAMETER_NAME.equals(strippedFieldName) ?
                 BUILDER_SETTER_DEFAULT_PARAMETER_NAME :
                 BUILDER_SETTER_ALTERNATIVE_PARAMETER_NAME;
-        final PsiMethod setterMethod = psiElementFactory.createMethod(methodName, builderType);
-        final boolean useJsr305 = options.contains(InnerBuilderOption.JSR305_ANNOTATIONS);
+    }
+
+    /**
+     * @param nextStageName the stage interface the setter returns, or the builder for the last stage.
+     */
+    private InnerBuilderMember generateStageSetter(final PsiFieldMember member, final String nextStageName) {
+        final PsiField field = member.getElement();
+        final String strippedFieldName = getStrippedFieldName(field.getName());
+        final String parameterName = getSetterParameterName(strippedFieldName);
 
-        if (useJsr305) setterMethod.getModifierList().addAnnotation(JSR305_NONNULL);
+        final StringBuilder text = new StringBuilder("@Override\npublic ");
+        text.append(nextStageName).append(' ').append(getSetterName(strippedFieldName)).append('(');
+        appendParameter(text, field, parameterName);
+        text.append(") {\n");
+        text.append(String.format("this.%s = %s;\nreturn this;\n}", field.getName(), parameterName));
 
-        setterMethod.getModifierList().setModifierProperty(PsiModifier.PUBLIC, true);
-        final PsiParameter setterParameter = psiElementFactory.createParameter(parameterName, fieldType);
+        return InnerBuilderMember.method(getSetterName(strippedFieldName),
+            Collections.singletonList(field.getType()), text.toString(), true);
+    }
 
-        if (!(fieldType instanceof PsiPrimitiveType)) {
-            final PsiModifierList setterParameterModifierList = setterParameter.getModifierList();
-            if (setterParameterModifierList != null) {
-                if (useJsr305) setterParameterModifierList.addAnnotation(JSR305_NONNULL);
-            }
+    private InnerBuilderMember generateStageInterface(final String stageName, final PsiFieldMember member,
+                                                      final String nextStageName) {
+        final PsiField field = member.getElement();
+        final String strippedFieldName = getStrippedFieldName(field.getName());
+
+        final StringBuilder text = new StringBuilder("public interface ");
+        text.append(stageName).append(" {\n").append(nextStageName).append(' ');
+        text.append(getSetterName(strippedFieldName)).append('(');
+        appendParameter(text, field, getSetterParameterName(strippedFieldName));
+        text.append(");\n}");
+
+        return InnerBuilderMember.innerClass(stageName, text.toString());
+    }
+
+    private void appendParameter(final StringBuilder text, final PsiField field, final String parameterName) {
+        if (!InnerBuilderUtils.isPrimitive(field) && profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+            text.append('@').append(JSR305_NONNULL).append(' ');
         }
-        setterMethod.getParameterList().add(setterParameter);
-        final PsiCodeBlock setterMethodBody = setterMethod.getBody();
-        if (setterMethodBody != null) {
-            final String actualFieldName = options.contains(InnerBuilderOption.FIELD_NAMES) ?
-                "this." + rawFieldName :
-                rawFieldName;
-            final PsiStatement assignStatement = psiElementFactory.createStatementFromText(String.format(
-                "%s = %s;", actualFieldName, parameterName), setterMethod);
-            setterMethodBody.add(assignStatement);
-            setterMethodBody.add(InnerBuilderUtils.createReturnThis(psiElementFactory, setterMethod));
+        text.append(field.getType().getCanonicalText()).append(' ').append(parameterName);
+    }
+
+    /**
+     * Generates the private {@code mutableItems(int)} helper that copies the collection on the first modification,
+     * and the public {@code expectItems(int)}, {@code addItem(E)} and {@code addAllItems(Collection)} methods, or
+     * {@code putItem(K, V)} and {@code putAllItems(Map)} for maps.
+     */
+    private List<InnerBuilderMember> generateCollectionMethods(final PsiClass targetClass,
+                                                               final PsiType builderType, final PsiField field,
+                                                               final InnerBuilderCollectionKind kind,
+                                                               final InnerBuilderRequiredFields required,
+                                                               final InnerBuilderFieldDefaults defaults) {
+        final String rawFieldName = field.getName();
+        final String fieldName = getStrippedFieldName(rawFieldName);
+        final String capitalizedName = InnerBuilderUtils.capitalize(fieldName);
+        final String singularName = StringUtil.unpluralize(fieldName);
+        final String capitalizedSingularName = singularName != null && !singularName.equals(fieldName) ?
+            InnerBuilderUtils.capitalize(singularName) : null;
+        final String ownedFieldName = getOwnedFieldName(field);
+        final String fieldType = field.getType().getCanonicalText();
+        final String[] elementTypes = kind.getElementTypeTexts(field.getType());
+        final StringBuilder markSetText = new StringBuilder();
+        appendMarkSet(markSetText, field, required, defaults);
+        final boolean replaceAdders = !required.isEmpty() || defaults.isTracked(field);
+        final String builderTypeText = builderType.getCanonicalText();
+        final List<InnerBuilderMember> members = new ArrayList<>(4);
+
+        // the fields are qualified, they may be named like the local variable or the parameter
+        final String mutableMethodName = "mutable" + capitalizedName;
+        final String qualifiedFieldName = "this." + rawFieldName;
+        final StringBuilder mutable = new StringBuilder("private ").append(fieldType).append(' ');
+        mutable.append(mutableMethodName).append("(int extraSize) {\n");
+        mutable.append(String.format("if (!this.%s) {\n", ownedFieldName));
+        mutable.append(String.format("final %s copy = %s;\n", fieldType, kind.getNewCollectionText(
+            String.format("(%1$s == null ? 0 : %1$s.size()) + extraSize", qualifiedFieldName))));
+        mutable.append(String.format("if (%1$s != null) {\ncopy.%2$s(%1$s);\n}\n", qualifiedFieldName,
+            kind.isMap() ? "putAll" : "addAll"));
+        mutable.append(String.format("%s = copy;\nthis.%s = true;\n}\n", qualifiedFieldName, ownedFieldName));
+        mutable.append(String.format("return %s;\n}", qualifiedFieldName));
+        members.add(InnerBuilderMember.method(mutableMethodName, Collections.singletonList(PsiType.INT),
+            mutable.toString(), true));
+
+        final String expectMethodName = "expect" + capitalizedName;
+        members.add(InnerBuilderMember.method(expectMethodName, Collections.singletonList(PsiType.INT),
+            String.format("public %s %s(int expectedSize) {\n%s(expectedSize);\nreturn this;\n}", builderTypeText,
+                expectMethodName, mutableMethodName), !required.isEmpty()));
+
+        // adding elements counts as setting a required field, only expecting them doesn't
+        final String markSet = markSetText.toString();
+        final String addPrefix = kind.isMap() ? "put" : "add";
+        final String addMethodName = capitalizedSingularName != null ? addPrefix + capitalizedSingularName :
+            addPrefix + (kind.isMap() ? "Into" : "To") + capitalizedName;
+        final List<PsiType> addParameterTypes = new ArrayList<>(elementTypes.length);
+        for (final String elementType : elementTypes) {
+            addParameterTypes.add(psiElementFactory.createTypeFromText(elementType, targetClass));
         }
-        setSetterComment(setterMethod, strippedFieldName, parameterName);
-        return setterMethod;
+        final String addText = kind.isMap() ?
+            String.format("public %s %s(%s key, %s val) {\n%s(1).put(key, val);\n%sreturn this;\n}",
+                builderTypeText, addMethodName, elementTypes[0], elementTypes[1], mutableMethodName, markSet) :
+            String.format("public %s %s(%s val) {\n%s(1).add(val);\n%sreturn this;\n}",
+                builderTypeText, addMethodName, elementTypes[0], mutableMethodName, markSet);
+        members.add(InnerBuilderMember.method(addMethodName, addParameterTypes, addText, replaceAdders));
+
+        final String addAllMethodName = addPrefix + "All" + capitalizedName;
+        final String addAllParameterType = kind.isMap() ?
+            String.format("java.util.Map<? extends %s, ? extends %s>", elementTypes[0], elementTypes[1]) :
+            String.format("java.util.Collection<? extends %s>", elementTypes[0]);
+        members.add(InnerBuilderMember.method(addAllMethodName,
+            Collections.singletonList(psiElementFactory.createTypeFromText(addAllParameterType, targetClass)),
+            String.format("public %s %s(%s values) {\n%s(values.size()).%sAll(values);\n%sreturn this;\n}",
+                builderTypeText, addAllMethodName, addAllParameterType, mutableMethodName, addPrefix, markSet),
+            replaceAdders));
+
+        return members;
+    }
+
+    static String getStrippedFieldName(final String rawFieldName) {
+        return InnerBuilderUtils.hasOneLetterPrefix(rawFieldName) ?
+            Character.toLowerCase(rawFieldName.charAt(1)) + rawFieldName.substring(2) : rawFieldName;
     }
 
+    /**
+     * Renders {@code ordinalOf(String)}, {@code set(int, Object)} and the primitive setters, all dispatching to the
+     * regular setters so required and default tracking still applies.
+     */
+    private List<InnerBuilderMember> generateIndexedSetters(final PsiClass targetClass, final PsiType builderType,
+                                                            final InnerBuilderFieldOrdinals ordinals) {
+        final List<InnerBuilderMember> members = new ArrayList<>();
+        final String builderTypeText = builderType.getCanonicalText();
+        final String nonNull = profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS) ?
+            "@" + JSR305_NONNULL + "\n" : "";
+
+        final String ordinalOfText = methodComment("Returns the ordinal of the field with the given name.",
+            String.format("one of the {@code %s} constants, or -1 if there's no such field",
+                InnerBuilderFieldOrdinals.CONSTANT_PREFIX))
+            + String.format("public static int %s(String name) {\n%s}",
+                InnerBuilderFieldOrdinals.ORDINAL_OF_METHOD_NAME, ordinals.getOrdinalOfBodyText());
+        members.add(InnerBuilderMember.method(InnerBuilderFieldOrdinals.ORDINAL_OF_METHOD_NAME,
+            Collections.singletonList(psiElementFactory.createTypeFromText("java.lang.String", targetClass)),
+            ordinalOfText, true));
+
+        final StringBuilder cases = new StringBuilder();
+        final Map<String, StringBuilder> primitiveCases = new LinkedHashMap<>();
+        final Map<String, PsiType> primitiveTypes = new HashMap<>();
+        boolean unchecked = false;
+        for (int ordinal = 0; ordinal < ordinals.getFields().size(); ordinal++) {
+            final PsiField field = ordinals.getFields().get(ordinal);
+            final PsiType type = field.getType();
+            final String setterName = getSetterName(getStrippedFieldName(field.getName()));
+            cases.append(String.format("case %s:\nreturn %s((%s) value);\n", ordinals.getConstantName(ordinal),
+                setterName, InnerBuilderFieldOrdinals.getCastTypeText(type)));
+            unchecked |= !(type instanceof PsiPrimitiveType) && !TypeConversionUtil.erasure(type).equals(type);
+
+            final String primitiveSetMethodName = InnerBuilderFieldOrdinals.getPrimitiveSetMethodName(type);
+            if (primitiveSetMethodName != null) {
+                primitiveTypes.put(primitiveSetMethodName, type);
+                primitiveCases.computeIfAbsent(primitiveSetMethodName, key -> new StringBuilder()).append(
+                    String.format("case %s:\nreturn %s(value);\n", ordinals.getConstantName(ordinal), setterName));
+            }
+        }
+
+        final String setText = methodComment(String.format("Sets the field with the given ordinal, one of the "
+                + "{@code %s} constants.", InnerBuilderFieldOrdinals.CONSTANT_PREFIX), "a reference to this Builder")
+            + (unchecked ? "@SuppressWarnings(\"unchecked\")\n" : "") + nonNull
+            + String.format("public %s %s(int ordinal, Object value) {\nswitch (ordinal) {\n%sdefault:\n"
+                + "throw new IllegalArgumentException(\"Unknown field ordinal: \" + ordinal);\n}\n}", builderTypeText,
+                InnerBuilderFieldOrdinals.SET_METHOD_NAME, cases);
+        members.add(InnerBuilderMember.method(InnerBuilderFieldOrdinals.SET_METHOD_NAME,
+            Arrays.asList(PsiType.INT, psiElementFactory.createTypeFromText(CommonClassNames.JAVA_LANG_OBJECT,
+                targetClass)), setText, true));
+
+        // the primitive setters only take fields of exactly their type, so values are never boxed
+        for (final Map.Entry<String, StringBuilder> entry : primitiveCases.entrySet()) {
+            final PsiType type = primitiveTypes.get(entry.getKey());
+            final String text = methodComment(String.format("Sets the {@code %s} field with the given ordinal, one of "
+                    + "the {@code %s} constants.", type.getCanonicalText(), InnerBuilderFieldOrdinals.CONSTANT_PREFIX),
+                "a reference to this Builder") + nonNull
+                + String.format("public %s %s(int ordinal, %s value) {\nswitch (ordinal) {\n%sdefault:\n"
+                    + "throw new IllegalArgumentException(\"Not a %s field: \" + ordinal);\n}\n}", builderTypeText,
+                    entry.getKey(), type.getCanonicalText(), entry.getValue(), type.getCanonicalText());
+            members.add(InnerBuilderMember.method(entry.getKey(), Arrays.asList(PsiType.INT, type), text, true));
+        }
+
+        return members;
+    }
 
-    private PsiMethod generateConstructor(final PsiClass targetClass, final PsiType builderType) {
-        final PsiMethod constructor = psiElementFactory.createConstructor(targetClass.getName());
-        constructor.getModifierList().setModifierProperty(PsiModifier.PRIVATE, true);
+    /**
+     * Use the accessor of record components, direct field access if public, otherwise use getter.
+     */
+    private String getAccessText(final String qualifier, final PsiField field) {
+        final String fieldName = field.getName();
+        if (targetClass.isRecord()) {
+            return String.format("%s.%s()", qualifier, fieldName);
+        } else if (field.hasModifierProperty(PsiModifier.PUBLIC)) {
+            return String.format("%s.%s", qualifier, fieldName);
+        }
+        return String.format("%s.get%s()", qualifier, InnerBuilderUtils.capitalize(fieldName));
+    }
 
-        final PsiParameter builderParameter = psiElementFactory.createParameter("builder", builderType);
-        constructor.getParameterList().add(builderParameter);
+    private static String getOwnedFieldName(final PsiField field) {
+        return field.getName() + "Owned";
+    }
 
-        final PsiCodeBlock constructorBody = constructor.getBody();
-        if (constructorBody != null) {
-            for (final PsiFieldMember member : selectedFields) {
-                final PsiField field = member.getElement();
 
-                final PsiMethod setterPrototype = PropertyUtil.generateSetterPrototype(field);
-                final PsiMethod setter = targetClass.findMethodBySignature(setterPrototype, true);
+    private InnerBuilderMember generateConstructor(final PsiClass targetClass, final PsiType builderType,
+                                                   final Map<PsiField, InnerBuilderCollectionKind> collectionFields,
+                                                   final InnerBuilderFieldDefaults defaults) {
+        final StringBuilder text = new StringBuilder("private ");
+        text.append(targetClass.getName()).append('(').append(builderType.getCanonicalText()).append(" builder) {\n");
 
-                final String fieldName = field.getName();
-                boolean isFinal = false;
-                final PsiModifierList modifierList = field.getModifierList();
-                if (modifierList != null) {
-                    isFinal = modifierList.hasModifierProperty(PsiModifier.FINAL);
-                }
+        for (final PsiFieldMember member : selectedFields) {
+            ProgressManager.checkCanceled();
+            final PsiField field = member.getElement();
+            final PsiMethod setter = index.findSetter(field);
+            final String fieldName = field.getName();
 
-                final String assignText;
-                if (setter == null || isFinal) {
-                    assignText = String.format("%1$s = builder.%1$s;", fieldName);
-                } else {
-                    assignText = String.format("%s(builder.%s);", setter.getName(), fieldName);
-                }
+            final String valueText = getBuilderValueText("builder.", field, collectionFields.get(field));
 
-                final PsiStatement assignStatement = psiElementFactory.createStatementFromText(assignText, null);
-                constructorBody.add(assignStatement);
+            // a field that wasn't set gets its default, only evaluated then, or keeps the value of its own initializer
+            if (defaults.isTracked(field)) {
+                text.append(String.format("if (builder.%s) {\n", InnerBuilderFieldDefaults.getSetFlagName(field)));
+            }
+            if (setter == null || field.hasModifierProperty(PsiModifier.FINAL)) {
+                text.append(String.format("%s = %s;\n", fieldName, valueText));
+            } else {
+                text.append(String.format("%s(%s);\n", setter.getName(), valueText));
+            }
+            final String defaultText = defaults.getDefaultText(field);
+            if (defaultText != null) {
+                text.append(String.format("} else {\n%s = %s;\n}\n", fieldName, defaultText));
+            } else if (defaults.isTracked(field)) {
+                text.append("}\n");
             }
         }
+        text.append('}');
 
-        return constructor;
+        return InnerBuilderMember.method(targetClass.getName(), Collections.singletonList(builderType),
+            text.toString(), true);
     }
 
-    private PsiMethod generateBuildMethod(final PsiClass targetClass, final Set<InnerBuilderOption> options) {
-        final PsiType targetClassType = psiElementFactory.createType(targetClass);
-        final PsiMethod buildMethod = psiElementFactory.createMethod("build", targetClassType);
-
-        final boolean useJsr305 = options.contains(InnerBuilderOption.JSR305_ANNOTATIONS);
-        if (useJsr305)
-            buildMethod.getModifierList().addAnnotation(JSR305_NONNULL);
+    /**
+     * Generates a constructor taking every field value, so {@code build()} doesn't pass the builder itself and the JIT
+     * can scalar replace it. Fields are assigned directly, a setter is only called for an inaccessible superclass
+     * field.
+     */
+    private InnerBuilderMember generateAllArgsConstructor(final PsiClass targetClass) {
+        final StringBuilder text = new StringBuilder("private ");
+        text.append(targetClass.getName()).append('(');
+        for (int i = 0; i < selectedFields.size(); i++) {
+            final PsiField field = selectedFields.get(i).getElement();
+            text.append(i > 0 ? ", " : "").append(field.getType().getCanonicalText()).append(' ');
+            text.append(field.getName());
+        }
+        text.append(") {\n");
 
-        buildMethod.getModifierList().setModifierProperty(PsiModifier.PUBLIC, true);
+        for (final PsiFieldMember member : selectedFields) {
+            ProgressManager.checkCanceled();
+            final PsiField field = member.getElement();
+            final PsiClass containingClass = field.getContainingClass();
+            final PsiMethod setter = containingClass == null || containingClass == targetClass
+                || index.isAccessible(field) ? null : index.findSetter(field);
 
-        final PsiCodeBlock buildMethodBody = buildMethod.getBody();
-        if (buildMethodBody != null) {
-            final PsiStatement returnStatement = psiElementFactory.createStatementFromText(String.format(
-                "return new %s(this);", targetClass.getName()), buildMethod);
-            buildMethodBody.add(returnStatement);
+            if (setter == null) {
+                text.append(String.format("this.%1$s = %1$s;\n", field.getName()));
+            } else {
+                text.append(String.format("%s(%s);\n", setter.getName(), field.getName()));
+            }
         }
-        setBuildMethodComment(buildMethod, targetClass);
-        return buildMethod;
+        text.append('}');
+
+        return InnerBuilderMember.method(targetClass.getName(), getTypes(selectedFields), text.toString(), true);
     }
 
-    @NotNull
-    private PsiClass findOrCreateBuilderClass(final PsiClass targetClass) {
-        final PsiClass builderClass = targetClass.findInnerClassByName(BUILDER_CLASS_NAME, false);
-        if (builderClass == null) {
-            return createBuilderClass(targetClass);
+    /**
+     * A constructor generated before is private and its body only differs in whitespace, anything else was written or
+     * changed by hand.
+     */
+    private static boolean isGeneratedConstructor(final PsiMethod constructor, final InnerBuilderMember generated) {
+        final PsiCodeBlock body = constructor.getBody();
+        if (!constructor.hasModifierProperty(PsiModifier.PRIVATE) || body == null) {
+            return false;
         }
 
-        return builderClass;
+        final String generatedText = generated.getText();
+        return StringUtil.equals(removeWhitespace(body.getText()),
+            removeWhitespace(generatedText.substring(generatedText.indexOf('{'))));
     }
 
-    @NotNull
-    private PsiClass createBuilderClass(final PsiClass targetClass) {
-        final PsiClass builderClass = (PsiClass) targetClass.add(psiElementFactory.createClass(BUILDER_CLASS_NAME));
-        PsiUtil.setModifierProperty(builderClass, PsiModifier.STATIC, true);
-        PsiUtil.setModifierProperty(builderClass, PsiModifier.FINAL, true);
-        setBuilderComment(builderClass, targetClass);
-        setBuilderAnnotation(builderClass);
-        return builderClass;
+    private static String removeWhitespace(final String text) {
+        return text.replaceAll("\\s+", "");
     }
 
-    private PsiElement findOrCreateField(final PsiClass builderClass, final PsiFieldMember member,
-                                         @Nullable final PsiElement last) {
-        final PsiField field = member.getElement();
-        final String fieldName = field.getName();
-        final PsiType fieldType = field.getType();
-        final PsiField existingField = builderClass.findFieldByName(fieldName, false);
-        if (existingField == null || !InnerBuilderUtils.areTypesPresentableEqual(existingField.getType(), fieldType)) {
-            if (existingField != null) {
-                existingField.delete();
-            }
-            final PsiField newField = psiElementFactory.createField(fieldName, fieldType);
-            if (last != null) {
-                return builderClass.addAfter(newField, last);
-            } else {
-                return builderClass.add(newField);
+    /**
+     * @param kind the collection kind if the field has element adders.
+     * @return the value of the builder field to hand to the built object.
+     */
+    private static String getBuilderValueText(final String qName, final PsiField field,
+                                              @Nullable final InnerBuilderCollectionKind kind) {
+        final String fieldText = qName + field.getName();
+        if (kind == null) {
+            return fieldText;
+        }
+
+        // collections filled by the builder are handed over without copying, build() gives up the ownership; any other
+        // collection, set whole or shared by toBuilder(), may still be modified by its owner and is copied once
+        final String ownedText = qName + getOwnedFieldName(field);
+        return String.format("%1$s == null ? null : %2$s", fieldText, kind.getUnmodifiableText(
+            String.format("%s ? %s : %s", ownedText, fieldText, kind.getCopyText(fieldText))));
+    }
+
+    /**
+     * @return the expression creating the target from this builder, for records a call of the canonical constructor
+     * with the default value for every component that wasn't selected.
+     */
+    private String getNewTargetText(final PsiClass targetClass,
+                                    final Map<PsiField, InnerBuilderCollectionKind> collectionFields,
+                                    final boolean allArgs) {
+        if (allArgs) {
+            final StringBuilder text = new StringBuilder("new ").append(targetClass.getName()).append('(');
+            for (int i = 0; i < selectedFields.size(); i++) {
+                final PsiField field = selectedFields.get(i).getElement();
+                text.append(i > 0 ? ", " : "").append(getBuilderValueText("this.", field, collectionFields.get(field)));
+            }
+            return text.append(')').toString();
+        }
+
+        if (!targetClass.isRecord()) {
+            return String.format("new %s(this)", targetClass.getName());
+        }
+
+        final Map<String, PsiField> selectedFieldsByName = new HashMap<>();
+        for (final PsiFieldMember member : selectedFields) {
+            selectedFieldsByName.put(member.getElement().getName(), member.getElement());
+        }
+
+        final StringBuilder text = new StringBuilder("new ").append(targetClass.getName()).append('(');
+        boolean first = true;
+        for (final PsiField component : InnerBuilderCollector.getRecordFields(targetClass)) {
+            if (!first) {
+                text.append(", ");
             }
+            first = false;
+
+            final PsiField field = selectedFieldsByName.get(component.getName());
+            text.append(field != null ? getBuilderValueText("this.", field, collectionFields.get(field)) :
+                getDefaultValue(component.getType()));
         }
-        return existingField;
+        return text.append(')').toString();
     }
 
-    private PsiElement addMethod(@NotNull final PsiClass target, @Nullable final PsiElement after,
-                                 @NotNull final PsiMethod newMethod, final boolean replace) {
-        PsiMethod existingMethod = target.findMethodBySignature(newMethod, false);
-        if (existingMethod == null && newMethod.isConstructor()) {
-            for (final PsiMethod constructor : target.getConstructors()) {
-                if (InnerBuilderUtils.areParameterListsEqual(constructor.getParameterList(),
-                    newMethod.getParameterList())) {
-                    existingMethod = constructor;
-                    break;
-                }
+    private InnerBuilderMember generateBuildMethod(final PsiClass targetClass,
+                                                   final InnerBuilderRequiredFields required,
+                                                   final Map<PsiField, InnerBuilderCollectionKind> collectionFields,
+                                                   final boolean allArgs) {
+        final StringBuilder text = new StringBuilder(buildMethodComment(targetClass));
+        if (profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+            text.append('@').append(JSR305_NONNULL).append('\n');
+        }
+        text.append("public ").append(targetClass.getName()).append(" build() {\n");
+        if (!required.isEmpty()) {
+            text.append(String.format("if (%s) {\nthrow new IllegalStateException(%s());\n}\n",
+                required.getMissingCheckText(), InnerBuilderRequiredFields.MISSING_FIELDS_METHOD_NAME));
+        }
+        final String newTargetText = getNewTargetText(targetClass, collectionFields, allArgs);
+        if (collectionFields.isEmpty()) {
+            text.append(String.format("return %s;\n}", newTargetText));
+        } else {
+            // the built object now shares the collections, the next element adder copies them
+            text.append(String.format("final %s result = %s;\n", targetClass.getName(), newTargetText));
+            for (final PsiField field : collectionFields.keySet()) {
+                text.append(String.format("%s = false;\n", getOwnedFieldName(field)));
             }
+            text.append("return result;\n}");
+        }
+
+        // the canonical or all-args constructor call follows the selected fields
+        return InnerBuilderMember.method("build", Collections.emptyList(), text.toString(),
+            !required.isEmpty() || !collectionFields.isEmpty() || targetClass.isRecord() || allArgs);
+    }
+
+    /**
+     * Renders {@code buildInterned()} and its cache: a fixed size array of weak references indexed by the hash of the
+     * builder fields. A colliding instance evicts the one in its slot, the garbage collector clears the ones no longer
+     * used. The cache size is only generated once, so it can be tuned by hand.
+     */
+    private List<InnerBuilderMember> generateInternedMembers(final PsiClass targetClass,
+                                                             final InnerBuilderRequiredFields required,
+                                                             final InnerBuilderFieldDefaults defaults) {
+        final List<InnerBuilderMember> members = new ArrayList<>();
+        final String targetName = targetClass.getName();
+        final String referenceTypeText = String.format("java.lang.ref.WeakReference<%s>", targetName);
+        final String cacheTypeText = String.format("java.util.concurrent.atomic.AtomicReferenceArray<%s>",
+            referenceTypeText);
+
+        members.add(InnerBuilderMember.field(InnerBuilderInterning.CACHE_SIZE_FIELD_NAME, PsiType.INT, true,
+            String.format("private static final int %s = %d;", InnerBuilderInterning.CACHE_SIZE_FIELD_NAME,
+                InnerBuilderInterning.DEFAULT_CACHE_SIZE)));
+        members.add(InnerBuilderMember.field(InnerBuilderInterning.CACHE_FIELD_NAME,
+            psiElementFactory.createTypeFromText(cacheTypeText, targetClass), true,
+            String.format("private static final %s %s = new java.util.concurrent.atomic.AtomicReferenceArray<>(%s);",
+                cacheTypeText, InnerBuilderInterning.CACHE_FIELD_NAME, InnerBuilderInterning.CACHE_SIZE_FIELD_NAME)));
+
+        final StringBuilder text = new StringBuilder(methodComment(String.format("Returns a {@code %s} built from "
+                + "the parameters previously set, or an equal instance returned earlier. Only use it for immutable "
+                + "objects, callers share the instance.", targetName),
+            String.format("a {@code %s} with the parameters of this {@code %s.Builder}", targetName, targetName)));
+        if (profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+            text.append('@').append(JSR305_NONNULL).append('\n');
+        }
+        text.append(String.format("public %s %s() {\n", targetName, InnerBuilderInterning.BUILD_INTERNED_METHOD_NAME));
+        // don't hand out an interned instance for an incomplete builder
+        if (!required.isEmpty()) {
+            text.append(String.format("if (%s) {\nthrow new IllegalStateException(%s());\n}\n",
+                required.getMissingCheckText(), InnerBuilderRequiredFields.MISSING_FIELDS_METHOD_NAME));
         }
-        if (existingMethod == null) {
-            if (after != null) {
-                return target.addAfter(newMethod, after);
+        text.append(String.format("final int slot = (%s() & 0x7fffffff) %% %s;\n",
+            InnerBuilderInterning.HASH_METHOD_NAME, InnerBuilderInterning.CACHE_SIZE_FIELD_NAME));
+        text.append(String.format("final %s reference = %s.get(slot);\n", referenceTypeText,
+            InnerBuilderInterning.CACHE_FIELD_NAME));
+        text.append(String.format("final %s interned = reference != null ? reference.get() : null;\n", targetName));
+        text.append(String.format("if (interned != null && %s(interned)) {\nreturn interned;\n}\n",
+            InnerBuilderInterning.MATCHES_METHOD_NAME));
+        text.append(String.format("final %s result = build();\n", targetName));
+        text.append(String.format("%s.set(slot, new java.lang.ref.WeakReference<>(result));\nreturn result;\n}",
+            InnerBuilderInterning.CACHE_FIELD_NAME));
+        members.add(InnerBuilderMember.method(InnerBuilderInterning.BUILD_INTERNED_METHOD_NAME,
+            Collections.emptyList(), text.toString(), !required.isEmpty()));
+
+        // the hash and comparison follow the selected fields, the builder is nested in the target class, so it reads
+        // the fields of the interned instance directly, like toBuilder() does; a tracked field that wasn't set gets a
+        // default only the constructor evaluates, so it never matches
+        final StringBuilder hashText = new StringBuilder(String.format("private int %s() {\nint hash = 1;\n",
+            InnerBuilderInterning.HASH_METHOD_NAME));
+        final List<String> comparisons = new ArrayList<>();
+        for (final PsiFieldMember member : selectedFields) {
+            final PsiField field = member.getElement();
+            hashText.append(String.format("hash = 31 * hash + %s;\n",
+                InnerBuilderInterning.getHashText(field.getType(), field.getName())));
+            final String equalsText = InnerBuilderInterning.getEqualsText(field.getType(), field.getName(),
+                getFieldReadText("interned", field));
+            if (defaults.isTracked(field)) {
+                final String setFlagName = InnerBuilderFieldDefaults.getSetFlagName(field);
+                hashText.append(String.format("hash = 31 * hash + %s;\n",
+                    InnerBuilderInterning.getHashText(PsiType.BOOLEAN, setFlagName)));
+                comparisons.add(String.format("%s && %s", setFlagName, equalsText));
             } else {
-                return target.add(newMethod);
+                comparisons.add(equalsText);
             }
-        } else if (replace) {
-            existingMethod.replace(newMethod);
         }
-        return existingMethod;
+        hashText.append("return hash;\n}");
+        final String matchesText = String.format("private boolean %s(%s interned) {\nreturn %s;\n}",
+            InnerBuilderInterning.MATCHES_METHOD_NAME, targetName,
+            comparisons.isEmpty() ? "true" : String.join("\n&& ", comparisons));
+        members.add(InnerBuilderMember.method(InnerBuilderInterning.HASH_METHOD_NAME, Collections.emptyList(),
+            hashText.toString(), true));
+        members.add(InnerBuilderMember.method(InnerBuilderInterning.MATCHES_METHOD_NAME,
+            Collections.singletonList(psiElementFactory.createType(targetClass)), matchesText, true));
+
+        return members;
     }
 
-    private static EnumSet<InnerBuilderOption> currentOptions() {
-        final EnumSet<InnerBuilderOption> options = EnumSet.noneOf(InnerBuilderOption.class);
-        final PropertiesComponent propertiesComponent = PropertiesComponent.getInstance();
-        for (final InnerBuilderOption option : InnerBuilderOption.values()) {
+    private InnerBuilderMember generateBuildAndResetMethod(final PsiClass targetClass) {
+        final StringBuilder text = new StringBuilder(methodComment(
+            String.format("Returns a {@code %s} built from the parameters previously set, then resets this "
+                + "builder so it can be reused.", targetClass.getName()),
+            String.format("a {@code %s} built with parameters of this {@code %s.Builder}", targetClass.getName(),
+                targetClass.getName())));
+        if (profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+            text.append('@').append(JSR305_NONNULL).append('\n');
+        }
+        text.append("public ").append(targetClass.getName()).append(" buildAndReset() {\n");
+        text.append(String.format("final %s result = build();\n", targetClass.getName()));
+        text.append(RESET_METHOD_NAME).append("();\nreturn result;\n}");
 
-            if (option.isBooleanProperty()) {
-                final boolean currentSetting = propertiesComponent.getBoolean(option.getProperty(), false);
-                if (currentSetting) {
-                    options.add(option);
-                }
-            } else {
-                String currentValue = String.valueOf(propertiesComponent.getValue(option.getProperty()));
+        return InnerBuilderMember.method("buildAndReset", Collections.emptyList(), text.toString(), false);
+    }
 
-                if (currentValue != null) {
-                    InnerBuilderOption.findValue(currentValue)
-                        .ifPresent(options::add);
-                }
-            }
+    /**
+     * Resets the fields with setters to their default values. The values passed to the builder constructor are kept.
+     */
+    private InnerBuilderMember generateResetMethod(final PsiType builderType,
+                                                   final Collection<PsiFieldMember> fields,
+                                                   final InnerBuilderRequiredFields required,
+                                                   final InnerBuilderFieldDefaults defaults,
+                                                   final Collection<PsiField> collectionFields) {
+        final StringBuilder text = new StringBuilder(methodComment(
+            "Resets the parameters set on this builder to their defaults.", "a reference to this Builder"));
+        if (profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+            text.append('@').append(JSR305_NONNULL).append('\n');
         }
-        return options;
+        text.append("public ").append(builderType.getCanonicalText()).append(' ').append(RESET_METHOD_NAME);
+        text.append("() {\n");
+        for (final PsiFieldMember member : fields) {
+            final PsiField field = member.getElement();
+            final String constantText = defaults.getConstantText(field);
+            text.append(String.format("this.%s = %s;\n", field.getName(),
+                constantText != null ? constantText : getDefaultValue(field.getType())));
+        }
+        for (final PsiField field : collectionFields) {
+            text.append(String.format("this.%s = false;\n", getOwnedFieldName(field)));
+        }
+        text.append(defaults.getResetText());
+        if (!required.isEmpty()) {
+            text.append(required.getResetText());
+        }
+        text.append("return this;\n}");
+
+        // the reset fields follow the selected fields, so it is always regenerated
+        return InnerBuilderMember.method(RESET_METHOD_NAME, Collections.emptyList(), text.toString(), true);
+    }
+
+    private List<InnerBuilderMember> generateRequiredFieldsFields(final PsiClass targetClass,
+                                                                  final InnerBuilderRequiredFields required) {
+        final PsiType type = psiElementFactory.createTypeFromText(required.getSetFieldsTypeText(), targetClass);
+        final List<InnerBuilderMember> members = new ArrayList<>(2);
+        members.add(InnerBuilderMember.field(InnerBuilderRequiredFields.REQUIRED_FIELDS_NAME, type, true,
+            required.getRequiredFieldsText(), true));
+        members.add(InnerBuilderMember.field(InnerBuilderRequiredFields.SET_FIELDS_NAME, type, false,
+            required.getSetFieldsText(), true));
+        return members;
+    }
+
+    private InnerBuilderMember generateThreadLocalField(final PsiClass targetClass) {
+        final String typeText = String.format("java.lang.ThreadLocal<%s>", BUILDER_CLASS_NAME);
+        final String text = String.format("private static final %s %s = ThreadLocal.withInitial(%s::new);", typeText,
+            THREAD_LOCAL_FIELD_NAME, BUILDER_CLASS_NAME);
+
+        return InnerBuilderMember.field(THREAD_LOCAL_FIELD_NAME,
+            psiElementFactory.createTypeFromText(typeText, targetClass), true, text);
+    }
+
+    private InnerBuilderMember generateForCurrentThreadMethod(final PsiType builderType) {
+        final StringBuilder text = new StringBuilder(methodComment(
+            "Returns the reset builder of the current thread. The builder is shared by all callers on the thread, so "
+                + "it must not be used while another object is being built with it.",
+            "the builder of the current thread"));
+        if (profile.contains(InnerBuilderOption.JSR305_ANNOTATIONS)) {
+            text.append('@').append(JSR305_NONNULL).append('\n');
+        }
+        text.append("public static ").append(builderType.getCanonicalText()).append(" forCurrentThread() {\n");
+        text.append(String.format("return %s.get().%s();\n}", THREAD_LOCAL_FIELD_NAME, RESET_METHOD_NAME));
+
+        return InnerBuilderMember.method("forCurrentThread", Collections.emptyList(), text.toString(), false);
+    }
+
+    private static String getDefaultValue(final PsiType type) {
+        if (PsiType.BOOLEAN.equals(type)) {
+            return "false";
+        }
+        return type instanceof PsiPrimitiveType ? "0" : "null";
     }
 
-    private void setBuilderComment(final PsiClass clazz, final PsiClass targetClass) {
-        if (currentOptions().contains(InnerBuilderOption.WITH_JAVADOC)) {
+    /**
+     * @param constantText the constant default of the field, or {@code null}.
+     */
+    private static InnerBuilderMember generateField(final PsiFieldMember member, final boolean finalField,
+                                                    @Nullable final String constantText) {
+        final PsiField field = member.getElement();
+        final String text = String.format("private %s%s %s%s;", finalField ? "final " : "",
+            field.getType().getCanonicalText(), field.getName(), constantText != null ? " = " + constantText : "");
+
+        // an existing field is replaced to pick up a changed default
+        return InnerBuilderMember.field(field.getName(), field.getType(), finalField, text, constantText != null);
+    }
+
+    @Nullable
+    private PsiElement addMember(final PsiClass target, final InnerBuilderMember member,
+                                 final PsiMember generatedMember) {
+        final PsiMember existingMember = member.findExisting(target);
+        if (existingMember == null) {
+            invocation.elementCreated();
+            return target.add(generatedMember);
+        } else if (member.isReplaceExisting()) {
+            invocation.elementReplaced();
+            return existingMember.replace(generatedMember);
+        }
+        return null;
+    }
+
+    private String builderComment(final PsiClass targetClass) {
+        if (profile.contains(InnerBuilderOption.WITH_JAVADOC)) {
             StringBuilder str = new StringBuilder("/**\n").append("* {@code ");
             str.append(targetClass.getName()).append("} builder static inner class.\n");
-            str.append("*/");
-            setStringComment(clazz, str.toString());
+            str.append("*/\n");
+            return str.toString();
         }
+        return "";
     }
 
-    private void setBuilderAnnotation(final PsiClass clazz) {
-        if (currentOptions().contains(InnerBuilderOption.PMD_AVOID_FIELD_NAME_MATCHING_METHOD_NAME_ANNOTATION)) {
-            clazz.getModifierList().addAnnotation("SuppressWarnings(\"PMD.AvoidFieldNameMatchingMethodName\")");
+    private String builderAnnotation() {
+        if (profile.contains(InnerBuilderOption.PMD_AVOID_FIELD_NAME_MATCHING_METHOD_NAME_ANNOTATION)) {
+            return "@SuppressWarnings(\"PMD.AvoidFieldNameMatchingMethodName\")\n";
         }
+        return "";
     }
 
-    private void setSetterComment(final PsiMethod method, final String fieldName, final String parameterName) {
-        if (currentOptions().contains(InnerBuilderOption.WITH_JAVADOC)) {
+    private String setterComment(final String fieldName, final String parameterName) {
+        if (profile.contains(InnerBuilderOption.WITH_JAVADOC)) {
             StringBuilder str = new StringBuilder("/**\n").append("* Sets the {@code ").append(fieldName);
             str.append("} and returns a reference to this Builder enabling method chaining.\n");
             str.append("* @param ").append(parameterName).append(" the {@code ");
             str.append(fieldName).append("} to set\n");
-            str.append("* @return a reference to this Builder\n*/");
-            setStringComment(method, str.toString());
+            str.append("* @return a reference to this Builder\n*/\n");
+            return str.toString();
+        }
+        return "";
+    }
+
+    private String methodComment(final String description, final String returnDescription) {
+        if (profile.contains(InnerBuilderOption.WITH_JAVADOC)) {
+            return String.format("/**\n* %s\n*\n* @return %s\n*/\n", description, returnDescription);
         }
+        return "";
     }
 
-    private void setBuildMethodComment(final PsiMethod method, final PsiClass targetClass) {
-        if (currentOptions().contains(InnerBuilderOption.WITH_JAVADOC)) {
+    private String buildMethodComment(final PsiClass targetClass) {
+        if (profile.contains(InnerBuilderOption.WITH_JAVADOC)) {
             StringBuilder str = new StringBuilder("/**\n");
             str.append("* Returns a {@code ").append(targetClass.getName()).append("} built ");
             str.append("from the parameters previously set.\n*\n");
             str.append("* @return a {@code ").append(targetClass.getName()).append("} ");
-            str.append("built with parameters of this {@code ").append(targetClass.getName()).append(".Builder}\n*/");
-            setStringComment(method, str.toString());
-        }
-    }
-
-    private void setStringComment(final PsiMethod method, final String strComment) {
-        PsiComment comment = psiElementFactory.createCommentFromText(strComment, null);
-        PsiDocComment doc = method.getDocComment();
-        if (doc != null) {
-            doc.replace(comment);
-        } else {
-            method.addBefore(comment, method.getFirstChild());
-        }
-    }
-
-    private void setStringComment(final PsiClass clazz, final String strComment) {
-        PsiComment comment = psiElementFactory.createCommentFromText(strComment, null);
-        PsiDocComment doc = clazz.getDocComment();
-        if (doc != null) {
-            doc.replace(comment);
-        } else {
-            clazz.addBefore(comment, clazz.getFirstChild());
+            str.append("built with parameters of this {@code ").append(targetClass.getName()).append(".Builder}\n*/\n");
+            return str.toString();
         }
+        return "";
     }
-}
\ No newline at end of file
+}
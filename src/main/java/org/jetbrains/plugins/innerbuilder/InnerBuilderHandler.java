@@ -7,7 +7,10 @@ import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.EditorModificationUtil;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiJavaFile;
 import org.jetbrains.annotations.NotNull;
@@ -15,7 +18,9 @@ import org.jetbrains.annotations.NotNull;
 import java.util.List;
 
 import static org.jetbrains.plugins.innerbuilder.InnerBuilderCollector.collectFields;
+import static org.jetbrains.plugins.innerbuilder.InnerBuilderCollector.hasFields;
 import static org.jetbrains.plugins.innerbuilder.InnerBuilderOptionSelector.selectFieldsAndOptions;
+import static org.jetbrains.plugins.innerbuilder.InnerBuilderOptionSelector.selectRequiredFields;
 
 public class InnerBuilderHandler implements LanguageCodeInsightActionHandler {
 
@@ -30,7 +35,7 @@ public class InnerBuilderHandler implements LanguageCodeInsightActionHandler {
             return false;
         }
 
-        return InnerBuilderUtils.getStaticOrTopLevelClass(file, editor) != null && isApplicable(file, editor);
+        return InnerBuilderUtils.getStaticOrTopLevelClass(file, editor) != null && hasFields(file, editor);
     }
 
     @Override
@@ -38,11 +43,6 @@ public class InnerBuilderHandler implements LanguageCodeInsightActionHandler {
         return false;
     }
 
-    private static boolean isApplicable(final PsiFile file, final Editor editor) {
-        final List<PsiFieldMember> targetElements = collectFields(file, editor);
-        return targetElements != null && !targetElements.isEmpty();
-    }
-
     @Override
     public void invoke(@NotNull final Project project, @NotNull final Editor editor, @NotNull final PsiFile file) {
         final PsiDocumentManager psiDocumentManager = PsiDocumentManager.getInstance(project);
@@ -61,15 +61,34 @@ public class InnerBuilderHandler implements LanguageCodeInsightActionHandler {
             return;
         }
 
-        final List<PsiFieldMember> existingFields = collectFields(file, editor);
+        final PsiElement element = file.findElementAt(editor.getCaretModel().getOffset());
+        final PsiClass targetClass = InnerBuilderUtils.getStaticOrTopLevelClass(file, editor);
+        if (element == null || targetClass == null) {
+            return;
+        }
+
+        final InnerBuilderMetrics.Invocation invocation = InnerBuilderMetrics.start();
+        final InnerBuilderHierarchyIndex index = new InnerBuilderHierarchyIndex(targetClass);
+        final List<PsiFieldMember> existingFields = InnerBuilderUtils.computeWithProgress(project,
+                "Collecting Builder Fields", () -> invocation.time(InnerBuilderMetrics.Phase.COLLECT_FIELDS,
+                        () -> collectFields(targetClass, element, index)));
         if (existingFields != null) {
-            final List<PsiFieldMember> selectedFields = selectFieldsAndOptions(existingFields, project);
+            final List<PsiFieldMember> selectedFields = invocation.time(InnerBuilderMetrics.Phase.CHOOSE_MEMBERS,
+                    () -> selectFieldsAndOptions(existingFields, project));
 
             if (selectedFields == null || selectedFields.isEmpty()) {
                 return;
             }
 
-            InnerBuilderGenerator.generate(project, editor, file, selectedFields);
+            final InnerBuilderProfile profile = InnerBuilderProfile.resolve(project);
+            final List<PsiField> requiredFields = invocation.time(InnerBuilderMetrics.Phase.CHOOSE_MEMBERS,
+                    () -> selectRequiredFields(targetClass, selectedFields, profile, project));
+            if (requiredFields == null) {
+                return;
+            }
+
+            InnerBuilderGenerator.generate(project, editor, targetClass, selectedFields, requiredFields, index, profile,
+                    invocation);
         }
     }
 
@@ -0,0 +1,93 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiResolveHelper;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.util.PropertyUtilBase;
+import com.intellij.psi.util.TypeConversionUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Setter and accessibility lookups for the fields of a class hierarchy, built from a single
+ * {@link PsiClass#getAllMethods()} pass. Create one per generation and share it between the collector and the
+ * generator.
+ */
+public final class InnerBuilderHierarchyIndex {
+    private final PsiClass psiClass;
+    private final PsiResolveHelper resolveHelper;
+    private final Map<PsiField, Boolean> accessibleFields = new HashMap<>();
+    private Map<String, List<PsiMethod>> methodsByName;
+
+    public InnerBuilderHierarchyIndex(@NotNull final PsiClass psiClass) {
+        this.psiClass = psiClass;
+        this.resolveHelper = JavaPsiFacade.getInstance(psiClass.getProject()).getResolveHelper();
+    }
+
+    @NotNull
+    public PsiClass getPsiClass() {
+        return psiClass;
+    }
+
+    /**
+     * @param field the field to test.
+     * @return true if the field is accessible from the indexed class, where the builder reads and writes it.
+     */
+    public boolean isAccessible(@NotNull final PsiField field) {
+        return accessibleFields.computeIfAbsent(field, key -> resolveHelper.isAccessible(key, psiClass, psiClass));
+    }
+
+    /**
+     * @param fieldName the field name.
+     * @return true if the hierarchy declares any method named {@code set<FieldName>}.
+     */
+    public boolean hasSetter(@NotNull final String fieldName) {
+        return getMethodsByName().containsKey(String.format("set%s", InnerBuilderUtils.capitalize(fieldName)));
+    }
+
+    /**
+     * @param field the field.
+     * @return the setter the hierarchy declares for the field, following the code style naming settings, or
+     * {@code null} if there is none.
+     */
+    @Nullable
+    public PsiMethod findSetter(@NotNull final PsiField field) {
+        final List<PsiMethod> candidates = getMethodsByName().get(PropertyUtilBase.suggestSetterName(field));
+        if (candidates == null) {
+            return null;
+        }
+
+        final PsiType fieldType = TypeConversionUtil.erasure(field.getType());
+        for (final PsiMethod candidate : candidates) {
+            final PsiParameter[] parameters = candidate.getParameterList().getParameters();
+            if (parameters.length == 1 && fieldType.equals(TypeConversionUtil.erasure(parameters[0].getType()))) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    private Map<String, List<PsiMethod>> getMethodsByName() {
+        if (methodsByName == null) {
+            final PsiMethod[] allMethods = psiClass.getAllMethods();
+            methodsByName = new HashMap<>(allMethods.length * 2);
+            for (final PsiMethod method : allMethods) {
+                ProgressManager.checkCanceled();
+                methodsByName.computeIfAbsent(method.getName(), name -> new ArrayList<>(1)).add(method);
+            }
+        }
+
+        return methodsByName;
+    }
+}
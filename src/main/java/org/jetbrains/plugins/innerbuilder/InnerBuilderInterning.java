@@ -0,0 +1,66 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.psi.PsiArrayType;
+import com.intellij.psi.PsiPrimitiveType;
+import com.intellij.psi.PsiType;
+import org.jetbrains.annotations.NonNls;
+
+/**
+ * Renders the hash and comparison of builder field values against an interned instance. Primitives are hashed and
+ * compared without boxing, floating point values like {@link Double#equals(Object)} does, arrays by content.
+ */
+final class InnerBuilderInterning {
+    @NonNls
+    static final String BUILD_INTERNED_METHOD_NAME = "buildInterned";
+    @NonNls
+    static final String CACHE_FIELD_NAME = "INTERNED";
+    @NonNls
+    static final String CACHE_SIZE_FIELD_NAME = "INTERNED_CACHE_SIZE";
+    @NonNls
+    static final String HASH_METHOD_NAME = "internedHash";
+    @NonNls
+    static final String MATCHES_METHOD_NAME = "matchesInterned";
+    static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private InnerBuilderInterning() { }
+
+    /**
+     * @return the hash code expression of the value.
+     */
+    static String getHashText(final PsiType type, final String valueText) {
+        if (type instanceof PsiArrayType) {
+            return String.format("java.util.Arrays.%s(%s)", isObjectArray(type) ? "deepHashCode" : "hashCode",
+                    valueText);
+        }
+        if (type instanceof PsiPrimitiveType) {
+            final String boxedName = ((PsiPrimitiveType) type).getBoxedTypeName();
+            // byte, short and char widen to int
+            final String hashName = PsiType.BYTE.equals(type) || PsiType.SHORT.equals(type)
+                    || PsiType.CHAR.equals(type) ? "java.lang.Integer" : boxedName;
+            return String.format("%s.hashCode(%s)", hashName, valueText);
+        }
+        return String.format("java.util.Objects.hashCode(%s)", valueText);
+    }
+
+    /**
+     * @return the expression comparing the two values.
+     */
+    static String getEqualsText(final PsiType type, final String valueText, final String otherText) {
+        if (type instanceof PsiArrayType) {
+            return String.format("java.util.Arrays.%s(%s, %s)", isObjectArray(type) ? "deepEquals" : "equals",
+                    valueText, otherText);
+        }
+        if (PsiType.FLOAT.equals(type) || PsiType.DOUBLE.equals(type)) {
+            return String.format("%s.compare(%s, %s) == 0", ((PsiPrimitiveType) type).getBoxedTypeName(), valueText,
+                    otherText);
+        }
+        if (type instanceof PsiPrimitiveType) {
+            return String.format("%s == %s", valueText, otherText);
+        }
+        return String.format("java.util.Objects.equals(%s, %s)", valueText, otherText);
+    }
+
+    private static boolean isObjectArray(final PsiType type) {
+        return !(((PsiArrayType) type).getComponentType() instanceof PsiPrimitiveType);
+    }
+}
@@ -0,0 +1,144 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMember;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A field, method, constructor or nested class generated by {@link InnerBuilderGenerator}, rendered to source text.
+ * <p>
+ * Members are matched against the existing members of the class by name and parameter types, so regenerating a
+ * builder only replaces what it owns and keeps hand-written code.
+ */
+final class InnerBuilderMember {
+    private final String name;
+    @Nullable
+    private final PsiType fieldType;
+    private final boolean finalField;
+    private final boolean innerClass;
+    private final List<PsiType> parameterTypes;
+    private final String text;
+    private final boolean replaceExisting;
+
+    private InnerBuilderMember(final String name, @Nullable final PsiType fieldType, final boolean finalField,
+                               final boolean innerClass, final List<PsiType> parameterTypes, final String text,
+                               final boolean replaceExisting) {
+        this.name = name;
+        this.fieldType = fieldType;
+        this.finalField = finalField;
+        this.innerClass = innerClass;
+        this.parameterTypes = parameterTypes;
+        this.text = text;
+        this.replaceExisting = replaceExisting;
+    }
+
+    static InnerBuilderMember field(@NotNull final String name, @NotNull final PsiType type, final boolean finalField,
+                                    @NotNull final String text) {
+        return field(name, type, finalField, text, false);
+    }
+
+    static InnerBuilderMember field(@NotNull final String name, @NotNull final PsiType type, final boolean finalField,
+                                    @NotNull final String text, final boolean replaceExisting) {
+        return new InnerBuilderMember(name, type, finalField, false, Collections.emptyList(), text, replaceExisting);
+    }
+
+    static InnerBuilderMember method(@NotNull final String name, @NotNull final List<PsiType> parameterTypes,
+                                     @NotNull final String text, final boolean replaceExisting) {
+        return new InnerBuilderMember(name, null, false, false, Collections.unmodifiableList(parameterTypes), text,
+                replaceExisting);
+    }
+
+    static InnerBuilderMember innerClass(@NotNull final String name, @NotNull final String text) {
+        return new InnerBuilderMember(name, null, false, true, Collections.emptyList(), text, true);
+    }
+
+    boolean isField() {
+        return fieldType != null;
+    }
+
+    boolean isInnerClass() {
+        return innerClass;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    boolean isReplaceExisting() {
+        return replaceExisting;
+    }
+
+    /**
+     * @param psiClass the class to look in, may be {@code null} if it doesn't exist yet.
+     * @return the member of {@code psiClass} this member corresponds to, or {@code null}.
+     */
+    @Nullable
+    PsiMember findExisting(@Nullable final PsiClass psiClass) {
+        if (psiClass == null) {
+            return null;
+        }
+
+        if (isField()) {
+            return psiClass.findFieldByName(name, false);
+        }
+
+        if (innerClass) {
+            return psiClass.findInnerClassByName(name, false);
+        }
+
+        for (final PsiMethod method : psiClass.findMethodsByName(name, false)) {
+            if (hasParameterTypes(method)) {
+                return method;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param existing the existing member found by {@link #findExisting(PsiClass)}.
+     * @return true if the existing member should be kept as is instead of being replaced by this one.
+     */
+    boolean keepsExisting(@Nullable final PsiMember existing) {
+        if (existing == null) {
+            return false;
+        }
+
+        if (existing instanceof PsiField) {
+            final PsiField existingField = (PsiField) existing;
+            return !replaceExisting
+                    && InnerBuilderUtils.areTypesPresentableEqual(existingField.getType(), fieldType)
+                    && (!finalField || existingField.hasModifierProperty(PsiModifier.FINAL));
+        }
+
+        return !replaceExisting;
+    }
+
+    private boolean hasParameterTypes(final PsiMethod method) {
+        final PsiParameter[] parameters = method.getParameterList().getParameters();
+        if (parameters.length != parameterTypes.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < parameters.length; i++) {
+            if (!InnerBuilderUtils.areTypesPresentableEqual(parameters[i].getType(), parameterTypes.get(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,207 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.registry.Registry;
+import org.jetbrains.annotations.NonNls;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Timings of the phases of builder generation. Every invocation is logged at debug level, and at warning level when
+ * it takes longer than the {@value #THRESHOLD_REGISTRY_KEY} registry value. The last {@value #SAMPLE_COUNT} samples
+ * of every phase are kept for the percentiles shown by {@link InnerBuilderMetricsAction}.
+ */
+public final class InnerBuilderMetrics {
+    private static final Logger LOG = Logger.getInstance(InnerBuilderMetrics.class);
+
+    @NonNls
+    static final String THRESHOLD_REGISTRY_KEY = "innerbuilder.slow.generation.threshold.ms";
+    private static final int SAMPLE_COUNT = 1000;
+    private static final int DEFAULT_THRESHOLD_MILLIS = 500;
+
+    private static final Map<Phase, Samples> SAMPLES = new EnumMap<>(Phase.class);
+    private static final AtomicInteger INVOCATIONS = new AtomicInteger();
+    private static final AtomicInteger CREATED_ELEMENTS = new AtomicInteger();
+    private static final AtomicInteger REPLACED_ELEMENTS = new AtomicInteger();
+
+    static {
+        for (final Phase phase : Phase.values()) {
+            SAMPLES.put(phase, new Samples());
+        }
+    }
+
+    private InnerBuilderMetrics() { }
+
+    public enum Phase {
+        COLLECT_FIELDS("collectFields", true),
+        CHOOSE_MEMBERS("memberChooser", false),
+        PLAN("plan", true),
+        APPLY("apply", true),
+        SHORTEN_CLASS_REFERENCES("shortenClassReferences", true),
+        REFORMAT("reformat", true);
+
+        private final String displayName;
+        private final boolean counted;
+
+        Phase(final String displayName, final boolean counted) {
+            this.displayName = displayName;
+            this.counted = counted;
+        }
+
+        /**
+         * @return false for phases waiting on the user, they don't count towards the slow invocation threshold.
+         */
+        boolean isCounted() {
+            return counted;
+        }
+    }
+
+    /**
+     * @return a new invocation, recorded once {@link Invocation#finish()} is called.
+     */
+    public static Invocation start() {
+        return new Invocation();
+    }
+
+    /**
+     * @return the percentiles of every phase and the element counts over all recorded invocations.
+     */
+    static String report() {
+        final StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-24s %7s %9s %9s %9s %9s%n", "Phase (ms)", "count", "p50", "p90",
+                "p99", "max"));
+        for (final Phase phase : Phase.values()) {
+            final long[] sorted = SAMPLES.get(phase).sorted();
+            if (sorted.length == 0) {
+                report.append(String.format(Locale.ROOT, "%-24s %7d%n", phase.displayName, 0));
+            } else {
+                report.append(String.format(Locale.ROOT, "%-24s %7d %9.2f %9.2f %9.2f %9.2f%n", phase.displayName,
+                        sorted.length, millis(percentile(sorted, 50)), millis(percentile(sorted, 90)),
+                        millis(percentile(sorted, 99)), millis(sorted[sorted.length - 1])));
+            }
+        }
+        report.append(String.format(Locale.ROOT, "%nInvocations: %d, PSI elements created: %d, replaced: %d",
+                INVOCATIONS.get(), CREATED_ELEMENTS.get(), REPLACED_ELEMENTS.get()));
+        return report.toString();
+    }
+
+    private static long percentile(final long[] sorted, final int percentile) {
+        // nearest rank
+        final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static int getThresholdMillis() {
+        try {
+            return Registry.intValue(THRESHOLD_REGISTRY_KEY, DEFAULT_THRESHOLD_MILLIS);
+        } catch (final RuntimeException e) {
+            return DEFAULT_THRESHOLD_MILLIS; // registry not loaded, e.g. in tests
+        }
+    }
+
+    /**
+     * The phase timings of one generation. Phases may run on different threads.
+     */
+    public static final class Invocation {
+        private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+        private final AtomicInteger createdElements = new AtomicInteger();
+        private final AtomicInteger replacedElements = new AtomicInteger();
+
+        private Invocation() { }
+
+        public <T> T time(final Phase phase, final Supplier<T> computable) {
+            final long start = System.nanoTime();
+            try {
+                return computable.get();
+            } finally {
+                phaseNanos.addAndGet(phase.ordinal(), System.nanoTime() - start);
+            }
+        }
+
+        public void time(final Phase phase, final Runnable runnable) {
+            time(phase, () -> {
+                runnable.run();
+                return null;
+            });
+        }
+
+        void elementCreated() {
+            createdElements.incrementAndGet();
+        }
+
+        void elementReplaced() {
+            replacedElements.incrementAndGet();
+        }
+
+        int getCreatedElements() {
+            return createdElements.get();
+        }
+
+        int getReplacedElements() {
+            return replacedElements.get();
+        }
+
+        /**
+         * Records the timings and logs them, as a warning if the invocation was slow.
+         */
+        public void finish() {
+            long countedNanos = 0;
+            final StringBuilder phases = new StringBuilder();
+            for (final Phase phase : Phase.values()) {
+                final long nanos = phaseNanos.get(phase.ordinal());
+                if (nanos == 0) {
+                    continue; // phase didn't run, e.g. no dialog when regenerating
+                }
+
+                SAMPLES.get(phase).add(nanos);
+                if (phase.isCounted()) {
+                    countedNanos += nanos;
+                }
+                phases.append(String.format(Locale.ROOT, " %s=%.2fms", phase.displayName, millis(nanos)));
+            }
+            INVOCATIONS.incrementAndGet();
+            CREATED_ELEMENTS.addAndGet(createdElements.get());
+            REPLACED_ELEMENTS.addAndGet(replacedElements.get());
+
+            final String message = String.format(Locale.ROOT, "Builder generated in %.2fms:%s, created=%d replaced=%d",
+                    millis(countedNanos), phases, createdElements.get(), replacedElements.get());
+            if (countedNanos > TimeUnit.MILLISECONDS.toNanos(getThresholdMillis())) {
+                LOG.warn(message);
+            } else {
+                LOG.debug(message);
+            }
+        }
+    }
+
+    /**
+     * A ring buffer of the last {@value #SAMPLE_COUNT} samples.
+     */
+    private static final class Samples {
+        private final long[] nanos = new long[SAMPLE_COUNT];
+        private int next;
+        private int size;
+
+        synchronized void add(final long sample) {
+            nanos[next] = sample;
+            next = (next + 1) % SAMPLE_COUNT;
+            size = Math.min(size + 1, SAMPLE_COUNT);
+        }
+
+        synchronized long[] sorted() {
+            final long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.openapi.actionSystem.ActionUpdateThread;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.ui.Messages;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Internal action showing the percentiles of the builder generation phases recorded by {@link InnerBuilderMetrics}.
+ */
+public class InnerBuilderMetricsAction extends AnAction implements DumbAware {
+
+    @Override
+    public void actionPerformed(@NotNull final AnActionEvent e) {
+        Messages.showInfoMessage(e.getProject(), InnerBuilderMetrics.report(), "Builder Generation Timings");
+    }
+
+    @NotNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+}
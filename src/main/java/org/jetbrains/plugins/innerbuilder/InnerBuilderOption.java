@@ -20,6 +20,16 @@ public enum InnerBuilderOption {
     BUILDER_METHOD_IN_BUILDER("builderMethodInBuilder", false),
 
     COPY_CONSTRUCTOR("copyConstructor"),
+    TO_BUILDER("toBuilder"),
+    STAGED_BUILDER("stagedBuilder"),
+    ALL_ARGS_CONSTRUCTOR("allArgsConstructor"),
+    COLLECTION_ADDERS("collectionAdders"),
+    FIELD_DEFAULTS("fieldDefaults"),
+    INDEXED_SETTERS("indexedSetters"),
+    INTERNED_BUILD("internedBuild"),
+    REUSABLE_BUILDER("reusableBuilder"),
+    THREAD_LOCAL_BUILDER("threadLocalBuilder"),
+    REQUIRED_FIELDS("requiredFields"),
     WITH_NOTATION("withNotation"),
     SET_NOTATION("setNotation"),
     JSR305_ANNOTATIONS("useJSR305Annotations"),
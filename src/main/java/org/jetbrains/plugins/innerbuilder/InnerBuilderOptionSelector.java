@@ -2,17 +2,20 @@ package org.jetbrains.plugins.innerbuilder;
 
 import com.intellij.codeInsight.generation.PsiFieldMember;
 import com.intellij.ide.util.MemberChooser;
-import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.ComboBox;
 import com.intellij.openapi.ui.LabeledComponent;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiModifier;
 import com.intellij.ui.NonFocusableCheckBox;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.event.ItemEvent;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -80,6 +83,77 @@ public final class InnerBuilderOptionSelector {
                 "Generate builder copy constructor",
                 'o'
         ));
+
+        options.add(new CheckboxSelectorOption(
+                InnerBuilderOption.TO_BUILDER,
+                "Generate toBuilder() method",
+                'b',
+                "Add an instance method that returns a builder sharing the field values, including collections, "
+                        + "of this object")
+        );
+
+        options.add(new CheckboxSelectorOption(
+                InnerBuilderOption.STAGED_BUILDER,
+                "Generate staged builder for final fields",
+                'g',
+                "Set final fields one at a time through a chain of stage interfaces instead of builder constructor "
+                        + "parameters, for example: newBuilder().name(name).age(age).build()")
+        );
+
+        options.add(new CheckboxSelectorOption(
+                InnerBuilderOption.ALL_ARGS_CONSTRUCTOR,
+                "Pass field values to the constructor",
+                'a',
+                "Let build() call a private constructor taking every field value instead of the builder, "
+                        + "which the JIT can optimize better")
+        );
+
+        options.add(new CheckboxSelectorOption(
+                InnerBuilderOption.COLLECTION_ADDERS,
+                "Generate collection element adders",
+                'l',
+                "Add addItem(), addAllItems() and expectItems() for List, Set and Map fields, for example: "
+                        + "builder.addTag(String tag)")
+        );
+
+        options.add(new CheckboxSelectorOption(
+                InnerBuilderOption.FIELD_DEFAULTS,
+                "Keep field initializers as defaults",
+                'd',
+                "Constant initializers become builder field initializers, other initializers move into the "
+                        + "constructor and only run for fields that weren't set, for example: private int port = 8080;")
+        );
+
+        options.add(new CheckboxSelectorOption(
+                InnerBuilderOption.INDEXED_SETTERS,
+                "Generate index-based setters",
+                'x',
+                "Add FIELD_ ordinal constants, ordinalOf(String name), set(int ordinal, Object value) and setInt() "
+                        + "and setLong() for primitive fields, so codecs can fill the builder without reflection")
+        );
+
+        options.add(new CheckboxSelectorOption(
+                InnerBuilderOption.INTERNED_BUILD,
+                "Generate interning buildInterned()",
+                'i',
+                "Add buildInterned() returning an equal instance built earlier when there is one, from a bounded "
+                        + "cache of weak references, for immutable value objects")
+        );
+
+        options.add(new CheckboxSelectorOption(
+                InnerBuilderOption.REUSABLE_BUILDER,
+                "Generate reusable builder",
+                'u',
+                "Add reset() and buildAndReset() to the builder, so one builder can build many objects")
+        );
+
+        options.add(new CheckboxSelectorOption(
+                InnerBuilderOption.THREAD_LOCAL_BUILDER,
+                "Generate per-thread builder accessor",
+                'h',
+                "Add a static Builder.forCurrentThread() that returns a reset builder kept per thread, "
+                        + "for builders without constructor parameters")
+        );
         options.add(new CheckboxSelectorOption(
                 InnerBuilderOption.WITH_NOTATION,
                 "Use 'with...' notation",
@@ -126,6 +200,13 @@ public final class InnerBuilderOptionSelector {
                 "Generate builder methods that has the same parameter names in setter methods as field names, for example: builder.withName(String fieldName)")
         );
 
+        options.add(new CheckboxSelectorOption(
+                InnerBuilderOption.REQUIRED_FIELDS,
+                "Check required fields in build()",
+                'q',
+                "Choose the fields that must be set, build() throws an IllegalStateException listing the ones that weren't")
+        );
+
         return options;
     }
 
@@ -143,7 +224,7 @@ public final class InnerBuilderOptionSelector {
             return members;
         }
 
-        final JComponent[] optionCheckBoxes = buildOptions();
+        final JComponent[] optionCheckBoxes = buildOptions(project);
 
         final PsiFieldMember[] memberArray = members.toArray(new PsiFieldMember[0]);
 
@@ -161,46 +242,142 @@ public final class InnerBuilderOptionSelector {
         return null;
     }
 
-    private static JComponent[] buildOptions() {
-        final PropertiesComponent propertiesComponent = PropertiesComponent.getInstance();
+    /**
+     * Asks which of the fields with builder setters are required, if {@link InnerBuilderOption#REQUIRED_FIELDS} is set.
+     * Fields annotated as not-null are selected initially. Record components are set through the builder like mutable
+     * fields, so they are all offered.
+     *
+     * @return the required fields, or {@code null} if the dialog was canceled.
+     */
+    @Nullable
+    public static List<PsiField> selectRequiredFields(final PsiClass targetClass, final List<PsiFieldMember> members,
+                                                      final InnerBuilderProfile profile, final Project project) {
+        if (!profile.contains(InnerBuilderOption.REQUIRED_FIELDS)) {
+            return Collections.emptyList();
+        }
+
+        final List<PsiFieldMember> setterFields = new ArrayList<>();
+        for (final PsiFieldMember member : members) {
+            if (!member.getElement().hasModifierProperty(PsiModifier.FINAL)
+                    || profile.contains(InnerBuilderOption.FINAL_SETTERS) || targetClass.isRecord()) {
+                setterFields.add(member);
+            }
+        }
+
+        final List<PsiField> notNullFields = InnerBuilderCollector.collectNotNullFields(setterFields);
+        if (setterFields.isEmpty() || ApplicationManager.getApplication().isUnitTestMode()) {
+            return notNullFields;
+        }
+
+        final PsiFieldMember[] memberArray = setterFields.toArray(new PsiFieldMember[0]);
+        final List<PsiFieldMember> preselected = new ArrayList<>();
+        for (final PsiFieldMember member : setterFields) {
+            if (notNullFields.contains(member.getElement())) {
+                preselected.add(member);
+            }
+        }
+
+        final MemberChooser<PsiFieldMember> chooser = new MemberChooser<>(memberArray,
+                true, // allowEmptySelection
+                true, // allowMultiSelection
+                project);
+        chooser.setTitle("Select Required Fields");
+        chooser.selectElements(preselected.toArray(new PsiFieldMember[0]));
+        if (!chooser.showAndGet()) {
+            return null;
+        }
+
+        final List<PsiField> requiredFields = new ArrayList<>();
+        final List<PsiFieldMember> selectedElements = chooser.getSelectedElements();
+        if (selectedElements != null) {
+            for (final PsiFieldMember member : selectedElements) {
+                requiredFields.add(member.getElement());
+            }
+        }
+        return requiredFields;
+    }
+
+    private static JComponent[] buildOptions(final Project project) {
+        final InnerBuilderOptionStore optionStore = InnerBuilderOptionStore.getInstance(project);
         final int optionCount = OPTIONS.size();
-        final JComponent[] checkBoxesArray = new JComponent[optionCount];
+        final JComponent[] checkBoxesArray = new JComponent[optionCount + 1];
         for (int i = 0; i < optionCount; i++) {
-            checkBoxesArray[i] = buildOptions(propertiesComponent, OPTIONS.get(i));
+            checkBoxesArray[i] = buildOptions(optionStore, OPTIONS.get(i));
         }
+        checkBoxesArray[optionCount] = buildProjectProfileCheckbox(optionStore, () -> {
+            for (int i = 0; i < optionCount; i++) {
+                reloadOption(optionStore, OPTIONS.get(i), checkBoxesArray[i]);
+            }
+        });
 
         return checkBoxesArray;
     }
 
-    private static JComponent buildOptions(final PropertiesComponent propertiesComponent,
+    private static JComponent buildOptions(final InnerBuilderOptionStore optionStore,
                                            final SelectorOption selectorOption) {
 
         if (selectorOption instanceof CheckboxSelectorOption) {
-            return buildCheckbox(propertiesComponent, (CheckboxSelectorOption) selectorOption);
+            return buildCheckbox(optionStore, (CheckboxSelectorOption) selectorOption);
         }
 
-        return buildDropdown(propertiesComponent, (DropdownSelectorOption) selectorOption);
+        return buildDropdown(optionStore, (DropdownSelectorOption) selectorOption);
     }
 
-    private static JComponent buildCheckbox(PropertiesComponent propertiesComponent, CheckboxSelectorOption selectorOption) {
+    private static JComponent buildCheckbox(InnerBuilderOptionStore optionStore,
+                                            CheckboxSelectorOption selectorOption) {
         final JCheckBox optionCheckBox = new NonFocusableCheckBox(selectorOption.getCaption());
         optionCheckBox.setMnemonic(selectorOption.getMnemonic());
         optionCheckBox.setToolTipText(selectorOption.getToolTip());
 
         final String optionProperty = selectorOption.getOption().getProperty();
-        optionCheckBox.setSelected(propertiesComponent.isTrueValue(optionProperty));
-        optionCheckBox.addItemListener(event -> propertiesComponent.setValue(optionProperty, Boolean.toString(optionCheckBox.isSelected())));
+        optionCheckBox.setSelected(optionStore.isTrueValue(optionProperty));
+        optionCheckBox.addItemListener(
+                event -> optionStore.setValue(optionProperty, Boolean.toString(optionCheckBox.isSelected())));
         return optionCheckBox;
     }
 
-    private static JComponent buildDropdown(PropertiesComponent propertiesComponent, DropdownSelectorOption selectorOption) {
+    /**
+     * Switches the store between the application and the project options, which isn't a generator option itself.
+     *
+     * @param reloadOptions shows the values of the store switched to.
+     */
+    private static JComponent buildProjectProfileCheckbox(final InnerBuilderOptionStore optionStore,
+                                                          final Runnable reloadOptions) {
+        final JCheckBox checkBox = new NonFocusableCheckBox("Store options in project");
+        checkBox.setMnemonic('r');
+        checkBox.setToolTipText("Store these options in .idea/innerbuilder.xml, "
+                + "so everyone working on the project generates the same builders");
+
+        checkBox.setSelected(optionStore.isProjectProfile());
+        checkBox.addItemListener(event -> {
+            optionStore.setProjectProfile(checkBox.isSelected());
+            reloadOptions.run();
+        });
+        return checkBox;
+    }
+
+    /**
+     * Shows the current value of the option in the store.
+     */
+    @SuppressWarnings("unchecked")
+    private static void reloadOption(InnerBuilderOptionStore optionStore, SelectorOption selectorOption,
+                                     JComponent component) {
+        if (component instanceof JCheckBox) {
+            ((JCheckBox) component).setSelected(optionStore.isTrueValue(selectorOption.getOption().getProperty()));
+        } else if (component instanceof LabeledComponent) {
+            ((LabeledComponent<ComboBox<DropdownSelectorOptionValue>>) component).getComponent().setSelectedItem(
+                    setSelectedComboBoxItem(optionStore, (DropdownSelectorOption) selectorOption));
+        }
+    }
+
+    private static JComponent buildDropdown(InnerBuilderOptionStore optionStore, DropdownSelectorOption selectorOption) {
         final ComboBox<DropdownSelectorOptionValue> comboBox = new ComboBox<>();
         comboBox.setEditable(false);
         comboBox.setRenderer(RENDERER);
         selectorOption.getValues().forEach(comboBox::addItem);
 
-        comboBox.setSelectedItem(setSelectedComboBoxItem(propertiesComponent, selectorOption));
-        comboBox.addItemListener(event -> setPropertiesComponentValue(propertiesComponent, selectorOption, event));
+        comboBox.setSelectedItem(setSelectedComboBoxItem(optionStore, selectorOption));
+        comboBox.addItemListener(event -> setOptionStoreValue(optionStore, selectorOption, event));
 
         LabeledComponent<ComboBox<DropdownSelectorOptionValue>> labeledComponent = LabeledComponent.create(comboBox, selectorOption.getCaption());
         labeledComponent.setToolTipText(selectorOption.getToolTip());
@@ -208,13 +385,13 @@ public final class InnerBuilderOptionSelector {
         return labeledComponent;
     }
 
-    private static void setPropertiesComponentValue(PropertiesComponent propertiesComponent, DropdownSelectorOption selectorOption, ItemEvent itemEvent) {
+    private static void setOptionStoreValue(InnerBuilderOptionStore optionStore, DropdownSelectorOption selectorOption, ItemEvent itemEvent) {
         DropdownSelectorOptionValue value = (DropdownSelectorOptionValue) itemEvent.getItem();
-        propertiesComponent.setValue(selectorOption.getOption().getProperty(), value.getOption().getProperty());
+        optionStore.setValue(selectorOption.getOption().getProperty(), value.getOption().getProperty());
     }
 
-    private static DropdownSelectorOptionValue setSelectedComboBoxItem(PropertiesComponent propertiesComponent, DropdownSelectorOption selectorOption) {
-        String selectedValue = propertiesComponent.getValue(selectorOption.getOption().getProperty());
+    private static DropdownSelectorOptionValue setSelectedComboBoxItem(InnerBuilderOptionStore optionStore, DropdownSelectorOption selectorOption) {
+        String selectedValue = optionStore.getValue(selectorOption.getOption().getProperty());
         return selectorOption.getValues()
                 .stream()
                 .filter(it -> Objects.equals(it.getOption().getProperty(), selectedValue))
@@ -0,0 +1,77 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads and writes option values, either from the project profile when it's enabled or from the application wide
+ * {@link PropertiesComponent}.
+ */
+final class InnerBuilderOptionStore {
+    private final PropertiesComponent applicationProperties;
+    @Nullable
+    private final InnerBuilderProjectSettings projectSettings;
+
+    private InnerBuilderOptionStore(final PropertiesComponent applicationProperties,
+                                    @Nullable final InnerBuilderProjectSettings projectSettings) {
+        this.applicationProperties = applicationProperties;
+        this.projectSettings = projectSettings;
+    }
+
+    static InnerBuilderOptionStore getInstance(@Nullable final Project project) {
+        return new InnerBuilderOptionStore(PropertiesComponent.getInstance(),
+                project != null && !project.isDefault() ? InnerBuilderProjectSettings.getInstance(project) : null);
+    }
+
+    @Nullable
+    String getValue(@NotNull final String property) {
+        if (isProjectProfile()) {
+            return projectSettings.getState().values.get(property);
+        }
+
+        return applicationProperties.getValue(property);
+    }
+
+    boolean isTrueValue(@NotNull final String property) {
+        return Boolean.parseBoolean(getValue(property));
+    }
+
+    void setValue(@NotNull final String property, @NotNull final String value) {
+        if (isProjectProfile()) {
+            projectSettings.getState().values.put(property, value);
+        } else {
+            applicationProperties.setValue(property, value);
+        }
+    }
+
+    /**
+     * @return true if the options are read from and written to the project profile.
+     */
+    boolean isProjectProfile() {
+        return projectSettings != null && projectSettings.getState().enabled;
+    }
+
+    /**
+     * Switches between the project profile and the application wide options. The first time the project profile is
+     * enabled it starts off with the application wide options. Does nothing without a project.
+     */
+    void setProjectProfile(final boolean enabled) {
+        if (projectSettings == null) {
+            return;
+        }
+
+        final InnerBuilderProjectSettings.Options state = projectSettings.getState();
+        if (enabled && state.values.isEmpty()) {
+            // start off with the options that were used so far
+            for (final InnerBuilderOption option : InnerBuilderOption.values()) {
+                final String value = applicationProperties.getValue(option.getProperty());
+                if (value != null) {
+                    state.values.put(option.getProperty(), value);
+                }
+            }
+        }
+        state.enabled = enabled;
+    }
+}
@@ -0,0 +1,100 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything {@link InnerBuilderGenerator#plan()} computed for one class: the rendered members, parsed but not yet
+ * inserted. Planning only needs read access, applying the plan is a short write action.
+ */
+public final class InnerBuilderPlan {
+    private final PsiClass targetClass;
+    @Nullable
+    private final PsiClass existingBuilderClass;
+    private final List<InnerBuilderMember> targetMembers;
+    private final List<InnerBuilderMember> generatedBuilderMembers;
+    private final PsiClass generatedClass;
+    private final List<PsiField> movedInitializerFields;
+    private final List<String> conflicts;
+    private final long modificationStamp;
+
+    InnerBuilderPlan(@NotNull final PsiClass targetClass, @Nullable final PsiClass existingBuilderClass,
+                     @NotNull final List<InnerBuilderMember> targetMembers,
+                     @NotNull final List<InnerBuilderMember> generatedBuilderMembers,
+                     @NotNull final PsiClass generatedClass,
+                     @NotNull final List<PsiField> movedInitializerFields,
+                     @NotNull final List<String> conflicts) {
+        this.targetClass = targetClass;
+        this.existingBuilderClass = existingBuilderClass;
+        this.targetMembers = Collections.unmodifiableList(targetMembers);
+        this.generatedBuilderMembers = Collections.unmodifiableList(generatedBuilderMembers);
+        this.generatedClass = generatedClass;
+        this.movedInitializerFields = Collections.unmodifiableList(movedInitializerFields);
+        this.conflicts = Collections.unmodifiableList(conflicts);
+        this.modificationStamp = getModificationStamp(targetClass);
+    }
+
+    @NotNull
+    public PsiClass getTargetClass() {
+        return targetClass;
+    }
+
+    /**
+     * @return true if the file of the target class didn't change since the plan was made.
+     */
+    public boolean isUpToDate() {
+        return isValid() && modificationStamp == getModificationStamp(targetClass);
+    }
+
+    /**
+     * @return true if the classes the plan was made for still exist. Enough for plans made together for several
+     * classes of one file, applying one of them changes the file but not the other classes.
+     */
+    boolean isValid() {
+        return targetClass.isValid() && (existingBuilderClass == null || existingBuilderClass.isValid());
+    }
+
+    @Nullable
+    PsiClass getExistingBuilderClass() {
+        return existingBuilderClass;
+    }
+
+    List<InnerBuilderMember> getTargetMembers() {
+        return targetMembers;
+    }
+
+    List<InnerBuilderMember> getGeneratedBuilderMembers() {
+        return generatedBuilderMembers;
+    }
+
+    PsiClass getGeneratedClass() {
+        return generatedClass;
+    }
+
+    /**
+     * @return the target class fields whose initializer moved into the constructor taking the builder.
+     */
+    List<PsiField> getMovedInitializerFields() {
+        return movedInitializerFields;
+    }
+
+    /**
+     * @return the hand-written code the plan kept instead of generating over it or changed, to be reported to the
+     * user.
+     */
+    @NotNull
+    public List<String> getConflicts() {
+        return conflicts;
+    }
+
+    private static long getModificationStamp(final PsiClass psiClass) {
+        final PsiFile file = psiClass.getContainingFile();
+        return file != null ? file.getModificationStamp() : -1;
+    }
+}
@@ -0,0 +1,69 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The options of one builder generation. Resolved once before generating and then passed around, so the generator
+ * never reads settings while it runs and batch runs all use the same options.
+ */
+public final class InnerBuilderProfile {
+    private final Set<InnerBuilderOption> options;
+
+    private InnerBuilderProfile(final Collection<InnerBuilderOption> options) {
+        final EnumSet<InnerBuilderOption> copy = EnumSet.noneOf(InnerBuilderOption.class);
+        copy.addAll(options);
+        this.options = Collections.unmodifiableSet(copy);
+    }
+
+    @NotNull
+    public static InnerBuilderProfile of(@NotNull final Collection<InnerBuilderOption> options) {
+        return new InnerBuilderProfile(options);
+    }
+
+    /**
+     * @param project the project, its profile in {@code .idea/innerbuilder.xml} is used if enabled.
+     * @return the options currently selected for the project, or the application wide ones.
+     */
+    @NotNull
+    public static InnerBuilderProfile resolve(@Nullable final Project project) {
+        final InnerBuilderOptionStore store = InnerBuilderOptionStore.getInstance(project);
+        final EnumSet<InnerBuilderOption> options = EnumSet.noneOf(InnerBuilderOption.class);
+        for (final InnerBuilderOption option : InnerBuilderOption.values()) {
+
+            if (option.isBooleanProperty()) {
+                if (store.isTrueValue(option.getProperty())) {
+                    options.add(option);
+                }
+            } else {
+                final String currentValue = store.getValue(option.getProperty());
+
+                if (currentValue != null) {
+                    InnerBuilderOption.findValue(currentValue)
+                        .ifPresent(options::add);
+                }
+            }
+        }
+        return new InnerBuilderProfile(options);
+    }
+
+    public boolean contains(@NotNull final InnerBuilderOption option) {
+        return options.contains(option);
+    }
+
+    @NotNull
+    public Set<InnerBuilderOption> getOptions() {
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return "InnerBuilderProfile" + options;
+    }
+}
@@ -0,0 +1,73 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builder options stored with the project in {@code .idea/innerbuilder.xml}, used instead of the application wide
+ * options when enabled. The field exclusion rules always apply. Modified whenever the state is loaded, e.g. after the
+ * file changed on disk.
+ */
+@State(name = "InnerBuilder", storages = @Storage("innerbuilder.xml"))
+public final class InnerBuilderProjectSettings implements PersistentStateComponent<InnerBuilderProjectSettings.Options>, ModificationTracker {
+    private final SimpleModificationTracker modificationTracker = new SimpleModificationTracker();
+    private Options options = new Options();
+    private volatile InnerBuilderExclusionRules exclusionRules;
+
+    public static InnerBuilderProjectSettings getInstance(@NotNull final Project project) {
+        return project.getService(InnerBuilderProjectSettings.class);
+    }
+
+    @NotNull
+    @Override
+    public Options getState() {
+        return options;
+    }
+
+    @Override
+    public void loadState(@NotNull final Options state) {
+        options = state;
+        exclusionRules = null;
+        modificationTracker.incModificationCount();
+    }
+
+    @Override
+    public long getModificationCount() {
+        return modificationTracker.getModificationCount();
+    }
+
+    /**
+     * @return the exclusion rules, compiled once per loaded state.
+     */
+    InnerBuilderExclusionRules getExclusionRules() {
+        InnerBuilderExclusionRules rules = exclusionRules;
+        if (rules == null) {
+            rules = InnerBuilderExclusionRules.compile(options);
+            exclusionRules = rules;
+        }
+        return rules;
+    }
+
+    public static final class Options {
+        public boolean enabled;
+        public Map<String, String> values = new TreeMap<>();
+        /** Qualified names of field types to exclude, type arguments ignored. */
+        public List<String> excludedTypes = new ArrayList<>(InnerBuilderExclusionRules.DEFAULT_EXCLUDED_TYPES);
+        /** Qualified names of annotations excluding the annotated fields. */
+        public List<String> excludedAnnotations = new ArrayList<>();
+        /** Modifiers excluding fields, e.g. {@code transient}. */
+        public List<String> excludedModifiers = new ArrayList<>();
+        /** Regular expressions matching the complete names of fields to exclude. */
+        public List<String> excludedNamePatterns = new ArrayList<>();
+    }
+}
@@ -0,0 +1,99 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.ide.impl.ProjectUtil;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiPackage;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PackageScope;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Regenerates all builders of a project from the command line:
+ * <pre>
+ * idea innerbuilder-regenerate &lt;project path&gt; [package]
+ * </pre>
+ * Without a package, every builder in the project sources is regenerated.
+ */
+public final class InnerBuilderRegenerateStarter implements ApplicationStarter {
+    @NonNls
+    private static final String COMMAND_NAME = "innerbuilder-regenerate";
+
+    @Override
+    public String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public boolean isHeadless() {
+        return true;
+    }
+
+    @Override
+    public int getRequiredModality() {
+        return NOT_IN_EDT;
+    }
+
+    @Override
+    public void main(@NotNull final List<String> args) {
+        int exitCode;
+        try {
+            exitCode = run(args);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            exitCode = 1;
+        }
+
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+        ApplicationManagerEx.getApplicationEx().exit(true, true);
+    }
+
+    private static int run(final List<String> args) {
+        // args.get(0) is the command name
+        if (args.size() < 2 || args.size() > 3) {
+            System.err.println("Usage: " + COMMAND_NAME + " <project path> [package]");
+            return 1;
+        }
+
+        final Project project = ProjectUtil.openOrImport(Paths.get(args.get(1)), null, false);
+        if (project == null) {
+            System.err.println("Cannot open project " + args.get(1));
+            return 1;
+        }
+
+        DumbService.getInstance(project).waitForSmartMode();
+        final GlobalSearchScope scope = args.size() == 3 ? getPackageScope(project, args.get(2))
+            : GlobalSearchScope.projectScope(project);
+        if (scope == null) {
+            System.err.println("Cannot find package " + args.get(2));
+            return 1;
+        }
+
+        final InnerBuilderRegenerator.Report report = InnerBuilderRegenerator.regenerate(project, scope);
+        ApplicationManager.getApplication().invokeAndWait(() ->
+            FileDocumentManager.getInstance().saveAllDocuments());
+        report.print(System.out);
+        return 0;
+    }
+
+    private static GlobalSearchScope getPackageScope(final Project project, final String packageName) {
+        return ReadAction.compute(() -> {
+            final PsiPackage psiPackage = JavaPsiFacade.getInstance(project).findPackage(packageName);
+            return psiPackage != null
+                ? PackageScope.packageScope(psiPackage, true).intersectWith(GlobalSearchScope.projectScope(project))
+                : null;
+        });
+    }
+}
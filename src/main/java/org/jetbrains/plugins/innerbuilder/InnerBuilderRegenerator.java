@@ -0,0 +1,243 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.PsiShortNamesCache;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regenerates every existing {@code Builder} in a scope without an editor, from the eligible fields of each class the
+ * builder already has, so fields left out of a builder stay out.
+ * <p>
+ * Builders are planned in parallel in non-blocking read actions, then applied in batches of short write actions so
+ * the IDE stays responsive while a large project is processed.
+ */
+public final class InnerBuilderRegenerator {
+    @NonNls
+    private static final String BUILDER_CLASS_NAME = "Builder";
+    @NonNls
+    private static final String COMMAND_NAME = "Regenerate Builders";
+    private static final int WRITE_BATCH_SIZE = 50;
+
+    private InnerBuilderRegenerator() { }
+
+    /**
+     * Must not be called from the event dispatch thread, it waits for the planning and write actions to finish.
+     */
+    @NotNull
+    public static Report regenerate(@NotNull final Project project, @NotNull final GlobalSearchScope scope) {
+        final long start = System.nanoTime();
+        final InnerBuilderProfile profile = InnerBuilderProfile.resolve(project);
+        final List<PsiClass> targetClasses = ReadAction.compute(() -> findTargetClasses(project, scope));
+
+        final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+            "InnerBuilder Regenerate", Runtime.getRuntime().availableProcessors());
+        final List<Future<PlannedClass>> futures = new ArrayList<>(targetClasses.size());
+        for (final PsiClass targetClass : targetClasses) {
+            futures.add(ReadAction.nonBlocking(() -> plan(project, targetClass, profile))
+                .inSmartMode(project)
+                .submit(executor));
+        }
+
+        final Report report = new Report();
+        final List<PlannedClass> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        for (int i = 0; i < futures.size(); i++) {
+            final PlannedClass plannedClass;
+            try {
+                plannedClass = getResult(futures.get(i));
+            } catch (final CancellationException e) {
+                // the planning was canceled, e.g. because the class was removed, the class is skipped
+                final PsiClass targetClass = targetClasses.get(i);
+                report.skipped.add(ReadAction.compute(() -> targetClass.isValid() ? getPath(targetClass) + ": "
+                    + targetClass.getQualifiedName() : "a removed class"));
+                continue;
+            }
+            if (plannedClass == null) {
+                continue;
+            }
+
+            batch.add(plannedClass);
+            if (batch.size() == WRITE_BATCH_SIZE) {
+                apply(project, batch, report);
+                batch.clear();
+            }
+        }
+        apply(project, batch, report);
+
+        report.totalNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private static List<PsiClass> findTargetClasses(final Project project, final GlobalSearchScope scope) {
+        final List<PsiClass> targetClasses = new ArrayList<>();
+        for (final PsiClass builderClass : PsiShortNamesCache.getInstance(project)
+            .getClassesByName(BUILDER_CLASS_NAME, scope)) {
+            final PsiClass targetClass = builderClass.getContainingClass();
+            if (targetClass != null && isTargetClass(targetClass)) {
+                targetClasses.add(targetClass);
+            }
+        }
+        return targetClasses;
+    }
+
+    static boolean isTargetClass(final PsiClass psiClass) {
+        return !psiClass.isInterface()
+            && !psiClass.hasModifierProperty(PsiModifier.ABSTRACT)
+            && (psiClass.getContainingClass() == null || psiClass.hasModifierProperty(PsiModifier.STATIC));
+    }
+
+    @Nullable
+    private static PlannedClass plan(final Project project, final PsiClass targetClass,
+                                     final InnerBuilderProfile profile) {
+        if (!targetClass.isValid()) {
+            return null;
+        }
+
+        final long start = System.nanoTime();
+        final InnerBuilderHierarchyIndex index = new InnerBuilderHierarchyIndex(targetClass);
+        final List<PsiFieldMember> fields = getBuilderFields(targetClass,
+            InnerBuilderCollector.collectFields(targetClass, null, index));
+        if (fields.isEmpty()) {
+            return null;
+        }
+
+        final InnerBuilderGenerator generator = new InnerBuilderGenerator(project, targetClass, fields,
+            InnerBuilderCollector.collectNotNullFields(fields), index, profile);
+        final InnerBuilderPlan plan = generator.plan();
+        return new PlannedClass(generator, plan, getPath(targetClass), System.nanoTime() - start);
+    }
+
+    /**
+     * @return the eligible fields that have a field of the same name in the existing builder, in field order.
+     */
+    static List<PsiFieldMember> getBuilderFields(final PsiClass targetClass,
+                                                         @Nullable final List<PsiFieldMember> fields) {
+        final PsiClass builderClass = targetClass.findInnerClassByName(BUILDER_CLASS_NAME, false);
+        final List<PsiFieldMember> builderFields = new ArrayList<>();
+        if (builderClass == null || fields == null) {
+            return builderFields;
+        }
+
+        for (final PsiFieldMember member : fields) {
+            if (builderClass.findFieldByName(member.getElement().getName(), false) != null) {
+                builderFields.add(member);
+            }
+        }
+        return builderFields;
+    }
+
+    private static void apply(final Project project, final List<PlannedClass> batch, final Report report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        ApplicationManager.getApplication().invokeAndWait(() ->
+            WriteCommandAction.runWriteCommandAction(project, COMMAND_NAME, null, () -> {
+                for (final PlannedClass plannedClass : batch) {
+                    final long start = System.nanoTime();
+                    final List<PsiElement> generatedElements = plannedClass.generator.apply(plannedClass.plan);
+                    plannedClass.generator.postProcess(generatedElements);
+                    report.add(plannedClass.path, plannedClass.planNanos, System.nanoTime() - start);
+                    report.conflicts.addAll(plannedClass.plan.getConflicts());
+                }
+            }));
+    }
+
+    /**
+     * @throws CancellationException if the planning was canceled.
+     */
+    @Nullable
+    private static PlannedClass getResult(final Future<PlannedClass> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static String getPath(final PsiClass psiClass) {
+        final VirtualFile file = psiClass.getContainingFile().getVirtualFile();
+        return file != null ? file.getPath() : psiClass.getContainingFile().getName();
+    }
+
+    private static final class PlannedClass {
+        private final InnerBuilderGenerator generator;
+        private final InnerBuilderPlan plan;
+        private final String path;
+        private final long planNanos;
+
+        private PlannedClass(final InnerBuilderGenerator generator, final InnerBuilderPlan plan, final String path,
+                             final long planNanos) {
+            this.generator = generator;
+            this.plan = plan;
+            this.path = path;
+            this.planNanos = planNanos;
+        }
+    }
+
+    /**
+     * Throughput of a regeneration run and the plan and apply time spent per file.
+     */
+    public static final class Report {
+        private final Map<String, long[]> fileNanos = new LinkedHashMap<>();
+        private final List<String> conflicts = new ArrayList<>();
+        private final List<String> skipped = new ArrayList<>();
+        private int classCount;
+        private long totalNanos;
+
+        private void add(final String path, final long planNanos, final long applyNanos) {
+            final long[] nanos = fileNanos.computeIfAbsent(path, key -> new long[2]);
+            nanos[0] += planNanos;
+            nanos[1] += applyNanos;
+            classCount++;
+        }
+
+        public int getClassCount() {
+            return classCount;
+        }
+
+        public double getClassesPerSecond() {
+            return totalNanos > 0 ? classCount * (double) TimeUnit.SECONDS.toNanos(1) / totalNanos : 0;
+        }
+
+        public void print(final PrintStream out) {
+            for (final Map.Entry<String, long[]> entry : fileNanos.entrySet()) {
+                out.printf("%s: plan %.1f ms, apply %.1f ms%n", entry.getKey(), entry.getValue()[0] / 1e6,
+                    entry.getValue()[1] / 1e6);
+            }
+            for (final String conflict : conflicts) {
+                out.println(conflict);
+            }
+            for (final String skippedClass : skipped) {
+                out.println("Skipped, planning was canceled: " + skippedClass);
+            }
+            out.printf("Regenerated %d builders in %d files in %.1f s (%.1f classes/s)%n", classCount,
+                fileNanos.size(), totalNanos / 1e9, getClassesPerSecond());
+        }
+    }
+}
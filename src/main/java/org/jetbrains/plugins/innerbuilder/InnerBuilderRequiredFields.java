@@ -0,0 +1,145 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.psi.PsiField;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the bookkeeping for required builder fields. Every required field gets one bit in a {@code long}, or in a
+ * {@code long[]} beyond 64 fields, that its setter sets. Since only required fields have bits, {@code build()} checks
+ * all of them with a single comparison and only works out which ones are missing when the check fails.
+ */
+final class InnerBuilderRequiredFields {
+    @NonNls
+    static final String SET_FIELDS_NAME = "setFields";
+    @NonNls
+    static final String REQUIRED_FIELDS_NAME = "REQUIRED_FIELDS";
+    @NonNls
+    static final String MISSING_FIELDS_METHOD_NAME = "missingRequiredFields";
+
+    private final List<PsiField> fields = new ArrayList<>();
+    private final Map<PsiField, Integer> bits = new HashMap<>();
+
+    /**
+     * @param setterFields   the fields the builder has setters for, in order.
+     * @param requiredFields the fields that must be set before building.
+     */
+    InnerBuilderRequiredFields(final Collection<PsiFieldMember> setterFields,
+                               final Collection<PsiField> requiredFields) {
+        for (final PsiFieldMember member : setterFields) {
+            final PsiField field = member.getElement();
+            if (requiredFields.contains(field)) {
+                bits.put(field, fields.size());
+                fields.add(field);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return fields.isEmpty();
+    }
+
+    String getSetFieldsTypeText() {
+        return isArray() ? "long[]" : "long";
+    }
+
+    String getSetFieldsText() {
+        if (isArray()) {
+            return String.format("private final long[] %s = new long[%d];", SET_FIELDS_NAME, getWordCount());
+        }
+        return String.format("private long %s;", SET_FIELDS_NAME);
+    }
+
+    String getRequiredFieldsText() {
+        if (!isArray()) {
+            return String.format("private static final long %s = %s;", REQUIRED_FIELDS_NAME, getMaskText(0));
+        }
+
+        final StringBuilder text = new StringBuilder("private static final long[] ");
+        text.append(REQUIRED_FIELDS_NAME).append(" = {");
+        for (int word = 0; word < getWordCount(); word++) {
+            text.append(word > 0 ? ", " : "").append(getMaskText(word));
+        }
+        return text.append("};").toString();
+    }
+
+    /**
+     * @return the statement that marks the field as set, or {@code null} if the field isn't required.
+     */
+    @Nullable
+    String getMarkSetText(final PsiField field) {
+        final Integer bit = bits.get(field);
+        if (bit == null) {
+            return null;
+        }
+
+        return String.format("%s%s |= %s;\n", SET_FIELDS_NAME, isArray() ? "[" + bit / Long.SIZE + "]" : "",
+            toHexText(1L << (bit % Long.SIZE)));
+    }
+
+    /**
+     * @return the condition that is true if any required field wasn't set.
+     */
+    String getMissingCheckText() {
+        if (isArray()) {
+            return String.format("!java.util.Arrays.equals(%s, %s)", SET_FIELDS_NAME, REQUIRED_FIELDS_NAME);
+        }
+        return String.format("%s != %s", SET_FIELDS_NAME, REQUIRED_FIELDS_NAME);
+    }
+
+    String getResetText() {
+        if (isArray()) {
+            return String.format("java.util.Arrays.fill(%s, 0L);\n", SET_FIELDS_NAME);
+        }
+        return String.format("%s = 0L;\n", SET_FIELDS_NAME);
+    }
+
+    /**
+     * @param qName       the qualifier of the builder being copied into, including the dot.
+     * @param builderName the name of the builder class, copies can be made from outside of it.
+     * @return the statement that marks all required fields of a copied builder as set.
+     */
+    String getCopyText(final String qName, final String builderName) {
+        if (isArray()) {
+            return String.format("System.arraycopy(%s.%s, 0, %s%s, 0, %d);\n", builderName, REQUIRED_FIELDS_NAME,
+                qName, SET_FIELDS_NAME, getWordCount());
+        }
+        return String.format("%s%s = %s.%s;\n", qName, SET_FIELDS_NAME, builderName, REQUIRED_FIELDS_NAME);
+    }
+
+    String getMissingFieldsMethodText() {
+        final StringBuilder text = new StringBuilder("private String ");
+        text.append(MISSING_FIELDS_METHOD_NAME).append("() {\n");
+        text.append("final StringBuilder missing = new StringBuilder(\"Missing required fields:\");\n");
+        for (int bit = 0; bit < fields.size(); bit++) {
+            text.append(String.format("if ((%s%s & %s) == 0L) {\nmissing.append(\" %s\");\n}\n", SET_FIELDS_NAME,
+                isArray() ? "[" + bit / Long.SIZE + "]" : "", toHexText(1L << (bit % Long.SIZE)),
+                fields.get(bit).getName()));
+        }
+        return text.append("return missing.toString();\n}").toString();
+    }
+
+    private boolean isArray() {
+        return fields.size() > Long.SIZE;
+    }
+
+    private int getWordCount() {
+        return (fields.size() + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private String getMaskText(final int word) {
+        final int bitCount = Math.min(Long.SIZE, fields.size() - word * Long.SIZE);
+        return toHexText(bitCount == Long.SIZE ? -1L : (1L << bitCount) - 1);
+    }
+
+    private static String toHexText(final long value) {
+        return "0x" + Long.toHexString(value) + "L";
+    }
+}
@@ -0,0 +1,229 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.codeInspection.AbstractBaseJavaLocalInspectionTool;
+import com.intellij.codeInspection.InspectionManager;
+import com.intellij.codeInspection.LocalQuickFix;
+import com.intellij.codeInspection.ProblemDescriptor;
+import com.intellij.codeInspection.ProblemHighlightType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiModifier;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import com.intellij.psi.util.PsiModificationTracker;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reports classes whose inner {@code Builder} has fields that no longer match a field of the class, either because
+ * the field is gone or because its type changed, and offers to regenerate it. Eligible fields the builder is missing,
+ * and builder fields without a setter, are only reported as weak warnings, the fields may have been left out on
+ * purpose. The check result is cached per class until the next PSI change or settings change.
+ */
+public class InnerBuilderStaleInspection extends AbstractBaseJavaLocalInspectionTool {
+    @NonNls
+    private static final String BUILDER_CLASS_NAME = "Builder";
+    @NonNls
+    private static final String[] TRACKING_FIELD_SUFFIXES = {"Owned", "Set"};
+
+    @Nullable
+    @Override
+    public ProblemDescriptor[] checkClass(@NotNull final PsiClass aClass, @NotNull final InspectionManager manager,
+                                          final boolean isOnTheFly) {
+        final PsiElement nameIdentifier = aClass.getNameIdentifier();
+        if (nameIdentifier == null || !InnerBuilderRegenerator.isTargetClass(aClass)
+                || aClass.findInnerClassByName(BUILDER_CLASS_NAME, false) == null) {
+            return null;
+        }
+
+        final Problem problem = getProblem(aClass);
+        if (problem == null) {
+            return null;
+        }
+
+        return new ProblemDescriptor[]{manager.createProblemDescriptor(nameIdentifier, problem.message,
+                new RegenerateBuilderFix(problem.missingFieldName), problem.highlightType, isOnTheFly)};
+    }
+
+    @Nullable
+    private static Problem getProblem(final PsiClass psiClass) {
+        return CachedValuesManager.getCachedValue(psiClass, () -> {
+            final Project project = psiClass.getProject();
+            final ModificationTracker settings = project.isDefault()
+                    ? ModificationTracker.NEVER_CHANGED : InnerBuilderProjectSettings.getInstance(project);
+            return CachedValueProvider.Result.create(computeProblem(psiClass),
+                    PsiModificationTracker.MODIFICATION_COUNT, settings);
+        });
+    }
+
+    @Nullable
+    private static Problem computeProblem(final PsiClass psiClass) {
+        final PsiClass builderClass = psiClass.findInnerClassByName(BUILDER_CLASS_NAME, false);
+        if (builderClass == null) {
+            return null;
+        }
+
+        for (final PsiField builderField : builderClass.getFields()) {
+            if (isBookkeepingField(builderClass, builderField)) {
+                continue;
+            }
+
+            final String fieldName = builderField.getName();
+            final PsiField field = psiClass.findFieldByName(fieldName, true);
+            if (field == null) {
+                return new Problem(String.format("Builder field '%s' has no matching field", fieldName),
+                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+            }
+
+            if (!InnerBuilderUtils.areTypesPresentableEqual(builderField.getType(), field.getType())) {
+                return new Problem(String.format("Builder field '%s' has type '%s' instead of '%s'", fieldName,
+                        builderField.getType().getPresentableText(), field.getType().getPresentableText()),
+                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING);
+            }
+        }
+
+        for (final PsiField field : InnerBuilderCollector.getCandidateFields(psiClass)) {
+            final String fieldName = field.getName();
+            if (builderClass.findFieldByName(fieldName, false) == null) {
+                return new Problem(String.format("Builder is missing field '%s'", fieldName),
+                        ProblemHighlightType.WEAK_WARNING, fieldName);
+            }
+
+            // final fields are passed to the builder constructor unless the builder has setters for them, record
+            // components always have setters
+            if ((!field.hasModifierProperty(PsiModifier.FINAL) || psiClass.isRecord())
+                    && !hasSetter(builderClass, field)) {
+                return new Problem(String.format("Builder is missing a setter for '%s'", fieldName),
+                        ProblemHighlightType.WEAK_WARNING);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Static fields and the fields tracking whether a value was set or its collection is owned by the builder don't
+     * hold a field value.
+     */
+    private static boolean isBookkeepingField(final PsiClass builderClass, final PsiField builderField) {
+        final String name = builderField.getName();
+        if (builderField.hasModifierProperty(PsiModifier.STATIC)
+                || InnerBuilderRequiredFields.SET_FIELDS_NAME.equals(name)) {
+            return true;
+        }
+
+        for (final String suffix : TRACKING_FIELD_SUFFIXES) {
+            if (name.endsWith(suffix) && PsiType.BOOLEAN.equals(builderField.getType()) && builderClass.findFieldByName(
+                    name.substring(0, name.length() - suffix.length()), false) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Accepts any of the setter notations the generator supports.
+     */
+    private static boolean hasSetter(final PsiClass builderClass, final PsiField field) {
+        final String fieldName = InnerBuilderGenerator.getStrippedFieldName(field.getName());
+        final String capitalizedName = InnerBuilderUtils.capitalize(fieldName);
+
+        return hasSetter(builderClass, fieldName, field)
+                || hasSetter(builderClass, "with" + capitalizedName, field)
+                || hasSetter(builderClass, "set" + capitalizedName, field);
+    }
+
+    private static boolean hasSetter(final PsiClass builderClass, final String methodName, final PsiField field) {
+        for (final PsiMethod method : builderClass.findMethodsByName(methodName, false)) {
+            final PsiParameter[] parameters = method.getParameterList().getParameters();
+            if (parameters.length == 1
+                    && InnerBuilderUtils.areTypesPresentableEqual(parameters[0].getType(), field.getType())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static final class Problem {
+        private final String message;
+        private final ProblemHighlightType highlightType;
+        @Nullable
+        private final String missingFieldName;
+
+        private Problem(final String message, final ProblemHighlightType highlightType) {
+            this(message, highlightType, null);
+        }
+
+        private Problem(final String message, final ProblemHighlightType highlightType,
+                        @Nullable final String missingFieldName) {
+            this.message = message;
+            this.highlightType = highlightType;
+            this.missingFieldName = missingFieldName;
+        }
+    }
+
+    /**
+     * Regenerates the builder from the fields it already has, so fields left out on purpose stay out. The field the
+     * builder was reported to be missing, if any, is added.
+     */
+    private static final class RegenerateBuilderFix implements LocalQuickFix {
+        @Nullable
+        private final String missingFieldName;
+
+        private RegenerateBuilderFix(@Nullable final String missingFieldName) {
+            this.missingFieldName = missingFieldName;
+        }
+
+        @NotNull
+        @Override
+        public String getName() {
+            return missingFieldName != null ? String.format("Regenerate builder with field '%s'", missingFieldName)
+                    : getFamilyName();
+        }
+
+        @NotNull
+        @Override
+        public String getFamilyName() {
+            return "Regenerate builder";
+        }
+
+        @Override
+        public void applyFix(@NotNull final Project project, @NotNull final ProblemDescriptor descriptor) {
+            final PsiClass targetClass = PsiTreeUtil.getParentOfType(descriptor.getPsiElement(), PsiClass.class);
+            if (targetClass == null) {
+                return;
+            }
+
+            final InnerBuilderHierarchyIndex index = new InnerBuilderHierarchyIndex(targetClass);
+            final List<PsiFieldMember> fields = InnerBuilderCollector.collectFields(targetClass, null, index);
+            final List<PsiFieldMember> builderFields = InnerBuilderRegenerator.getBuilderFields(targetClass, fields);
+            final List<PsiFieldMember> selectedFields = new ArrayList<>();
+            for (final PsiFieldMember member : fields != null ? fields : Collections.<PsiFieldMember>emptyList()) {
+                if (builderFields.contains(member) || member.getElement().getName().equals(missingFieldName)) {
+                    selectedFields.add(member);
+                }
+            }
+            if (selectedFields.isEmpty()) {
+                return;
+            }
+
+            new InnerBuilderGenerator(project, targetClass, selectedFields,
+                    InnerBuilderCollector.collectNotNullFields(selectedFields), index,
+                    InnerBuilderProfile.resolve(project)).run();
+        }
+    }
+}
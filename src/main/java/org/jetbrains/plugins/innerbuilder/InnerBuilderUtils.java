@@ -1,23 +1,34 @@
 package org.jetbrains.plugins.innerbuilder;
 
+import com.intellij.codeInsight.hint.HintManager;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiElementFactory;
+import com.intellij.psi.PsiExpression;
 import com.intellij.psi.PsiField;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiModifier;
-import com.intellij.psi.PsiParameter;
-import com.intellij.psi.PsiParameterList;
+import com.intellij.psi.PsiModifierList;
 import com.intellij.psi.PsiPrimitiveType;
-import com.intellij.psi.PsiStatement;
 import com.intellij.psi.PsiType;
+import com.intellij.psi.PsiTypeElement;
+import com.intellij.psi.javadoc.PsiDocComment;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.psi.util.PsiUtil;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 public final class InnerBuilderUtils {
     @NonNls
     static final String JAVA_DOT_LANG = "java.lang.";
@@ -55,25 +66,6 @@ public final class InnerBuilderUtils {
         return typeString.startsWith(JAVA_DOT_LANG) ? typeString.substring(JAVA_DOT_LANG.length()) : typeString;
     }
 
-    static boolean areParameterListsEqual(PsiParameterList paramList1, PsiParameterList paramList2) {
-        if (paramList1.getParametersCount() != paramList2.getParametersCount()) {
-            return false;
-        }
-
-        final PsiParameter[] param1Params = paramList1.getParameters();
-        final PsiParameter[] param2Params = paramList2.getParameters();
-        for (int i = 0; i < param1Params.length; i++) {
-            final PsiParameter param1Param = param1Params[i];
-            final PsiParameter param2Param = param2Params[i];
-
-            if (!areTypesPresentableEqual(param1Param.getType(), param2Param.getType())) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
     static boolean areTypesPresentableEqual(PsiType type1, PsiType type2) {
         if (type1 != null && type2 != null) {
             final String type1Canonical = stripJavaLang(type1.getPresentableText());
@@ -106,11 +98,76 @@ public final class InnerBuilderUtils {
             return null;
     }
 
+    /**
+     * Runs a computation in a non-blocking read action under a modal, cancelable progress. The computation is
+     * restarted when a write action comes in, so it must not have side effects.
+     *
+     * @param project     the project.
+     * @param title       the progress title.
+     * @param computation the computation, may call {@link ProgressManager#checkCanceled()}.
+     * @return the result of the computation, or {@code null} if the user canceled it.
+     */
+    @Nullable
+    static <T> T computeWithProgress(@NotNull Project project, @NotNull String title,
+                                     @NotNull Callable<T> computation) {
+        try {
+            return ProgressManager.getInstance().runProcessWithProgressSynchronously(
+                    () -> ReadAction.nonBlocking(computation).executeSynchronously(), title, true, project);
+        } catch (ProcessCanceledException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Shows the hand-written code the generation kept instead of generating over it or changed, if any, as a hint in
+     * the editor.
+     *
+     * @param editor    the editor.
+     * @param conflicts the conflicts of the applied plans.
+     */
+    static void showConflicts(@NotNull Editor editor, @NotNull Collection<String> conflicts) {
+        if (conflicts.isEmpty()) {
+            return;
+        }
+
+        final List<String> lines = new ArrayList<>(conflicts.size());
+        for (final String conflict : conflicts) {
+            lines.add(StringUtil.escapeXmlEntities(conflict));
+        }
+        HintManager.getInstance().showInformationHint(editor, StringUtil.join(lines, "<br>"));
+    }
+
     public static boolean isPrimitive(PsiField psiField) {
         return (psiField.getType() instanceof PsiPrimitiveType);
     }
 
-    static PsiStatement createReturnThis(@NotNull PsiElementFactory psiElementFactory, @Nullable PsiElement context) {
-        return psiElementFactory.createStatementFromText("return this;", context);
+    /**
+     * Declaration text of a single field, also when it's declared together with others ({@code int x, y;}).
+     *
+     * @param field the field.
+     * @return the field declaration, including its Javadoc, modifiers and initializer.
+     */
+    static String getDeclarationText(@NotNull PsiField field) {
+        final StringBuilder text = new StringBuilder();
+        final PsiDocComment docComment = field.getDocComment();
+        if (docComment != null) {
+            text.append(docComment.getText()).append('\n');
+        }
+
+        final PsiModifierList modifierList = field.getModifierList();
+        if (modifierList != null && modifierList.getTextLength() > 0) {
+            text.append(modifierList.getText()).append(' ');
+        }
+
+        final PsiTypeElement typeElement = field.getTypeElement();
+        text.append(typeElement != null ? typeElement.getText() : field.getType().getCanonicalText());
+        text.append(' ').append(field.getName());
+
+        final PsiExpression initializer = field.getInitializer();
+        if (initializer != null) {
+            text.append(" = ").append(initializer.getText());
+        }
+
+        return text.append(';').toString();
     }
 }
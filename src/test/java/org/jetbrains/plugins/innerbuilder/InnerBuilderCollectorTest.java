@@ -0,0 +1,68 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class InnerBuilderCollectorTest extends InnerBuilderTestCase {
+
+    public void testHasFields() {
+        myFixture.configureByText("Person.java", "public class <caret>Person {\n    private String name;\n}\n");
+        assertTrue(InnerBuilderCollector.hasFields(myFixture.getFile(), myFixture.getEditor()));
+    }
+
+    public void testHasNoFieldsWithOnlyStaticFields() {
+        myFixture.configureByText("Person.java", "public class <caret>Person {\n    static String name;\n}\n");
+        assertFalse(InnerBuilderCollector.hasFields(myFixture.getFile(), myFixture.getEditor()));
+    }
+
+    /**
+     * Accessibility is checked from the class the builder is generated for, not from the superclass declaring the
+     * field.
+     */
+    public void testSkipsPackagePrivateSuperclassFieldsOfOtherPackages() {
+        myFixture.addClass("package other; public class Base { String hidden; protected String visible; }");
+        myFixture.configureByText("Target.java", "public class <caret>Target extends other.Base {\n"
+                + "    private String own;\n}\n");
+        final PsiClass targetClass = myFixture.findClass("Target");
+
+        final List<PsiFieldMember> fields = InnerBuilderCollector.collectFields(targetClass, null,
+                new InnerBuilderHierarchyIndex(targetClass));
+        assertNotNull(fields);
+        final List<String> names = new ArrayList<>();
+        for (final PsiFieldMember member : fields) {
+            names.add(member.getElement().getName());
+        }
+        assertEquals(Arrays.asList("visible", "own"), names);
+    }
+
+    /**
+     * Repeated updates on an unchanged class get the very same list back, the hierarchy isn't walked again.
+     */
+    public void testCandidateFieldsCachedUntilPsiChange() {
+        myFixture.configureByText("Target.java",
+                createHierarchyText(100, 8).replace("public class Target", "public class <caret>Target"));
+        final PsiClass targetClass = myFixture.findClass("Target");
+
+        final List<PsiField> fields = InnerBuilderCollector.getCandidateFields(targetClass);
+        assertEquals(100, fields.size());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(InnerBuilderCollector.hasFields(myFixture.getFile(), myFixture.getEditor()));
+            assertSame(fields, InnerBuilderCollector.getCandidateFields(targetClass));
+        }
+
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> targetClass.add(
+                JavaPsiFacade.getElementFactory(getProject()).createFieldFromText("private long added;", targetClass)));
+
+        final List<PsiField> changedFields = InnerBuilderCollector.getCandidateFields(targetClass);
+        assertNotSame(fields, changedFields);
+        assertEquals(101, changedFields.size());
+        assertSame(changedFields, InnerBuilderCollector.getCandidateFields(targetClass));
+    }
+}
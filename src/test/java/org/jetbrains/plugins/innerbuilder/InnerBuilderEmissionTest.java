@@ -0,0 +1,51 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.testFramework.PlatformTestUtil;
+
+/**
+ * The builder is rendered and parsed once, so the PSI is changed a fixed number of times however many fields there
+ * are: the constructor taking the builder and the builder class are each inserted or replaced in one operation.
+ */
+public class InnerBuilderEmissionTest extends InnerBuilderTestCase {
+
+    public void testGenerate10Fields() {
+        doEmissionTest(10);
+    }
+
+    public void testGenerate100Fields() {
+        doEmissionTest(100);
+    }
+
+    public void testGenerate1000Fields() {
+        doEmissionTest(1000);
+    }
+
+    public void testRegenerate1000FieldsPerformance() {
+        myFixture.configureByText("Target.java", createHierarchyText(1000, 0));
+        generate(myFixture.findClass("Target"), InnerBuilderMetrics.start());
+        final String text = myFixture.getEditor().getDocument().getText();
+
+        PlatformTestUtil.startPerformanceTest(getTestName(false), 2000,
+                () -> generate(myFixture.findClass("Target"), InnerBuilderMetrics.start())
+        ).setup(() -> WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+            myFixture.getEditor().getDocument().setText(text);
+            PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+        })).assertTiming();
+    }
+
+    private void doEmissionTest(final int fieldCount) {
+        myFixture.configureByText("Target.java", createHierarchyText(fieldCount, 0));
+
+        final InnerBuilderMetrics.Invocation generation = InnerBuilderMetrics.start();
+        generate(myFixture.findClass("Target"), generation);
+        assertEquals(2, generation.getCreatedElements());
+        assertEquals(0, generation.getReplacedElements());
+
+        final InnerBuilderMetrics.Invocation regeneration = InnerBuilderMetrics.start();
+        generate(myFixture.findClass("Target"), regeneration);
+        assertEquals(0, regeneration.getCreatedElements());
+        assertEquals(2, regeneration.getReplacedElements());
+    }
+}
@@ -0,0 +1,167 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import java.util.Collections;
+
+/**
+ * Generates the builder of {@code testData/generator/<TestName>.java} with the options of the test and compares the
+ * result with {@code <TestName>_after.java}.
+ */
+public class InnerBuilderGeneratorTest extends InnerBuilderTestCase {
+
+    @Override
+    protected String getTestDataPath() {
+        return super.getTestDataPath() + "/generator";
+    }
+
+    public void testDefault() {
+        doTest();
+    }
+
+    public void testFinalFields() {
+        doTest();
+    }
+
+    public void testFinalSetters() {
+        doTest(InnerBuilderOption.FINAL_SETTERS);
+    }
+
+    public void testNewBuilderMethod() {
+        doTest(InnerBuilderOption.NEW_BUILDER_METHOD);
+    }
+
+    public void testStaticBuilderBuilderName() {
+        doTest(InnerBuilderOption.NEW_BUILDER_METHOD, InnerBuilderOption.STATIC_BUILDER_BUILDER_NAME);
+    }
+
+    public void testStaticBuilderNewClassName() {
+        doTest(InnerBuilderOption.NEW_BUILDER_METHOD, InnerBuilderOption.STATIC_BUILDER_NEW_CLASS_NAME);
+    }
+
+    public void testStaticBuilderNewClassNameBuilder() {
+        doTest(InnerBuilderOption.NEW_BUILDER_METHOD, InnerBuilderOption.STATIC_BUILDER_NEW_CLASS_NAME_BUILDER);
+    }
+
+    public void testBuilderMethodInBuilder() {
+        doTest(InnerBuilderOption.NEW_BUILDER_METHOD, InnerBuilderOption.BUILDER_METHOD_IN_BUILDER);
+    }
+
+    public void testCopyConstructor() {
+        doTest(InnerBuilderOption.COPY_CONSTRUCTOR);
+    }
+
+    public void testToBuilder() {
+        doTest(InnerBuilderOption.TO_BUILDER);
+    }
+
+    public void testStagedBuilder() {
+        doTest(InnerBuilderOption.STAGED_BUILDER);
+    }
+
+    public void testAllArgsConstructor() {
+        doTest(InnerBuilderOption.ALL_ARGS_CONSTRUCTOR);
+    }
+
+    public void testCollectionAdders() {
+        doTest(InnerBuilderOption.COLLECTION_ADDERS);
+    }
+
+    public void testFieldDefaults() {
+        doTest(InnerBuilderOption.FIELD_DEFAULTS);
+    }
+
+    public void testFieldDefaultsReportsMovedInitializers() {
+        myFixture.configureByFile("FieldDefaults.java");
+        final InnerBuilderPlan plan = generate(InnerBuilderOption.FIELD_DEFAULTS);
+        assertEquals(Collections.singletonList(
+                "Moved the initializer of Person.created into the constructor taking the builder"),
+                plan.getConflicts());
+    }
+
+    public void testIndexedSetters() {
+        doTest(InnerBuilderOption.INDEXED_SETTERS);
+    }
+
+    public void testInternedBuild() {
+        doTest(InnerBuilderOption.INTERNED_BUILD);
+    }
+
+    public void testInternedBuildFieldDefaults() {
+        doTest(InnerBuilderOption.INTERNED_BUILD, InnerBuilderOption.FIELD_DEFAULTS);
+    }
+
+    public void testReusableBuilder() {
+        doTest(InnerBuilderOption.REUSABLE_BUILDER);
+    }
+
+    public void testThreadLocalBuilder() {
+        doTest(InnerBuilderOption.REUSABLE_BUILDER, InnerBuilderOption.THREAD_LOCAL_BUILDER);
+    }
+
+    public void testRequiredFields() {
+        myFixture.addClass("package org.jetbrains.annotations; public @interface NotNull { }");
+        doTest(InnerBuilderOption.REQUIRED_FIELDS);
+    }
+
+    public void testWithNotation() {
+        doTest(InnerBuilderOption.WITH_NOTATION);
+    }
+
+    public void testSetNotation() {
+        doTest(InnerBuilderOption.SET_NOTATION);
+    }
+
+    public void testJsr305Annotations() {
+        myFixture.addClass("package javax.annotation; public @interface Nonnull { }");
+        doTest(InnerBuilderOption.JSR305_ANNOTATIONS);
+    }
+
+    public void testPmdAnnotation() {
+        doTest(InnerBuilderOption.PMD_AVOID_FIELD_NAME_MATCHING_METHOD_NAME_ANNOTATION);
+    }
+
+    public void testWithJavadoc() {
+        doTest(InnerBuilderOption.WITH_JAVADOC);
+    }
+
+    public void testFieldNames() {
+        doTest(InnerBuilderOption.FIELD_NAMES);
+    }
+
+    public void testRegenerateKeepsHandWrittenMembers() {
+        doTest();
+    }
+
+    // combinations of options that generate into the same members
+
+    public void testStagedBuilderToBuilder() {
+        doTest(InnerBuilderOption.STAGED_BUILDER, InnerBuilderOption.TO_BUILDER);
+    }
+
+    public void testAllArgsConstructorFieldDefaults() {
+        doTest(InnerBuilderOption.ALL_ARGS_CONSTRUCTOR, InnerBuilderOption.FIELD_DEFAULTS);
+    }
+
+    public void testRequiredFieldsReusableBuilder() {
+        myFixture.addClass("package org.jetbrains.annotations; public @interface NotNull { }");
+        doTest(InnerBuilderOption.REQUIRED_FIELDS, InnerBuilderOption.REUSABLE_BUILDER);
+    }
+
+    public void testInternedBuildCollectionAdders() {
+        doTest(InnerBuilderOption.INTERNED_BUILD, InnerBuilderOption.COLLECTION_ADDERS);
+    }
+
+    public void testCopyConstructorCollectionAdders() {
+        doTest(InnerBuilderOption.COPY_CONSTRUCTOR, InnerBuilderOption.COLLECTION_ADDERS);
+    }
+
+    public void testRecordCopyConstructorCollectionAdders() {
+        doTest(InnerBuilderOption.COPY_CONSTRUCTOR, InnerBuilderOption.COLLECTION_ADDERS);
+    }
+
+    private void doTest(final InnerBuilderOption... options) {
+        myFixture.configureByFile(getTestName(false) + ".java");
+        generate(options);
+        reformat();
+        myFixture.checkResultByFile(getTestName(false) + "_after.java", true);
+    }
+}
@@ -0,0 +1,141 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.testFramework.PlatformTestUtil;
+
+import java.util.List;
+
+/**
+ * Times field collection and generation on synthetic classes, so a slowdown in either hot path fails the build. The
+ * expected times are for a reference machine, {@link PlatformTestUtil} scales them to the one running the test.
+ */
+public class InnerBuilderPerformanceTest extends InnerBuilderTestCase {
+
+    public void testCollect10Fields() {
+        doCollectTest(10, 1, 20);
+    }
+
+    public void testCollect100Fields() {
+        doCollectTest(100, 1, 50);
+    }
+
+    public void testCollect1000Fields() {
+        doCollectTest(1000, 1, 300);
+    }
+
+    public void testCollect10FieldsIn3Superclasses() {
+        doCollectTest(10, 3, 20);
+    }
+
+    public void testCollect100FieldsIn3Superclasses() {
+        doCollectTest(100, 3, 50);
+    }
+
+    public void testCollect1000FieldsIn3Superclasses() {
+        doCollectTest(1000, 3, 300);
+    }
+
+    public void testCollect10FieldsIn6Superclasses() {
+        doCollectTest(10, 6, 20);
+    }
+
+    public void testCollect100FieldsIn6Superclasses() {
+        doCollectTest(100, 6, 50);
+    }
+
+    public void testCollect1000FieldsIn6Superclasses() {
+        doCollectTest(1000, 6, 300);
+    }
+
+    public void testCollect10FieldsIn10Superclasses() {
+        doCollectTest(10, 10, 20);
+    }
+
+    public void testCollect100FieldsIn10Superclasses() {
+        doCollectTest(100, 10, 50);
+    }
+
+    public void testCollect1000FieldsIn10Superclasses() {
+        doCollectTest(1000, 10, 300);
+    }
+
+    public void testGenerate10Fields() {
+        doGenerateTest(10, 1, 200);
+    }
+
+    public void testGenerate100Fields() {
+        doGenerateTest(100, 1, 500);
+    }
+
+    public void testGenerate1000Fields() {
+        doGenerateTest(1000, 1, 3000);
+    }
+
+    public void testGenerate10FieldsIn3Superclasses() {
+        doGenerateTest(10, 3, 200);
+    }
+
+    public void testGenerate100FieldsIn3Superclasses() {
+        doGenerateTest(100, 3, 500);
+    }
+
+    public void testGenerate1000FieldsIn3Superclasses() {
+        doGenerateTest(1000, 3, 3000);
+    }
+
+    public void testGenerate10FieldsIn6Superclasses() {
+        doGenerateTest(10, 6, 200);
+    }
+
+    public void testGenerate100FieldsIn6Superclasses() {
+        doGenerateTest(100, 6, 500);
+    }
+
+    public void testGenerate1000FieldsIn6Superclasses() {
+        doGenerateTest(1000, 6, 3000);
+    }
+
+    public void testGenerate10FieldsIn10Superclasses() {
+        doGenerateTest(10, 10, 200);
+    }
+
+    public void testGenerate100FieldsIn10Superclasses() {
+        doGenerateTest(100, 10, 500);
+    }
+
+    public void testGenerate1000FieldsIn10Superclasses() {
+        doGenerateTest(1000, 10, 3000);
+    }
+
+    private void doCollectTest(final int fieldCount, final int superclassCount, final int expectedMs) {
+        myFixture.configureByText("Target.java", createHierarchyText(fieldCount, superclassCount));
+        final PsiClass targetClass = myFixture.findClass("Target");
+
+        PlatformTestUtil.startPerformanceTest(getTestName(false), expectedMs, () -> {
+            final List<PsiFieldMember> fields = InnerBuilderCollector.collectFields(targetClass, null,
+                    new InnerBuilderHierarchyIndex(targetClass));
+            assertNotNull(fields);
+            assertEquals(fieldCount, fields.size());
+        }).assertTiming();
+    }
+
+    /**
+     * Every attempt starts over from the class without a builder.
+     */
+    private void doGenerateTest(final int fieldCount, final int superclassCount, final int expectedMs) {
+        final String text = createHierarchyText(fieldCount, superclassCount);
+        myFixture.configureByText("Target.java", text);
+
+        PlatformTestUtil.startPerformanceTest(getTestName(false), expectedMs, () -> {
+            generate(myFixture.findClass("Target"), InnerBuilderMetrics.start(), InnerBuilderOption.NEW_BUILDER_METHOD,
+                    InnerBuilderOption.TO_BUILDER);
+            assertNotNull(myFixture.findClass("Target").findInnerClassByName("Builder", false));
+        }).setup(() -> WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+            myFixture.getEditor().getDocument().setText(text);
+            PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+        })).assertTiming();
+    }
+}
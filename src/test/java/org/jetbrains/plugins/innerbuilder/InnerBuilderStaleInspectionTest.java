@@ -0,0 +1,58 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.codeInsight.daemon.impl.HighlightInfo;
+import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.psi.PsiManager;
+import com.intellij.testFramework.PlatformTestUtil;
+
+import java.util.List;
+
+public class InnerBuilderStaleInspectionTest extends InnerBuilderTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        myFixture.enableInspections(new InnerBuilderStaleInspection());
+    }
+
+    /**
+     * Highlights a file with many classes whose builder misses their last field, dropping the cached results
+     * before every attempt so each class is checked again.
+     */
+    public void testManyStaleClassesPerformance() {
+        final int classCount = 200;
+        myFixture.configureByText("Entities.java", createStaleClassesText(classCount, 20));
+
+        PlatformTestUtil.startPerformanceTest(getTestName(false), 2000, () -> {
+            final List<HighlightInfo> infos = myFixture.doHighlighting(HighlightSeverity.WEAK_WARNING);
+            int staleCount = 0;
+            for (final HighlightInfo info : infos) {
+                if (info.getDescription() != null && info.getDescription().startsWith("Builder is missing field")) {
+                    staleCount++;
+                }
+            }
+            assertEquals(classCount, staleCount);
+        }).setup(() -> PsiManager.getInstance(getProject()).dropPsiCaches()).assertTiming();
+    }
+
+    private static String createStaleClassesText(final int classCount, final int fieldCount) {
+        final StringBuilder text = new StringBuilder("public class Entities {\n");
+        for (int i = 0; i < classCount; i++) {
+            text.append(String.format("    public static class Entity%d {\n", i));
+            for (int field = 0; field < fieldCount; field++) {
+                text.append(String.format("        private String field%d;\n", field));
+            }
+            text.append("        public static final class Builder {\n");
+            // the builder is missing the last field, as if it was added after generating
+            for (int field = 0; field < fieldCount - 1; field++) {
+                text.append(String.format("            private String field%d;\n", field));
+            }
+            for (int field = 0; field < fieldCount - 1; field++) {
+                text.append(String.format("            public Builder field%1$d(String val) {\n"
+                        + "                field%1$d = val;\n                return this;\n            }\n", field));
+            }
+            text.append("        }\n    }\n");
+        }
+        return text.append("}\n").toString();
+    }
+}
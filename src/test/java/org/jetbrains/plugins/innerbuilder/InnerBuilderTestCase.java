@@ -0,0 +1,132 @@
+package org.jetbrains.plugins.innerbuilder;
+
+import com.intellij.application.options.CodeStyle;
+import com.intellij.codeInsight.generation.PsiFieldMember;
+import com.intellij.lang.java.JavaLanguage;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.projectRoots.JavaSdk;
+import com.intellij.pom.java.LanguageLevel;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.codeStyle.CodeStyleManager;
+import com.intellij.psi.codeStyle.CodeStyleSettings;
+import com.intellij.psi.codeStyle.CommonCodeStyleSettings;
+import com.intellij.psi.codeStyle.JavaCodeStyleSettings;
+import com.intellij.testFramework.LightProjectDescriptor;
+import com.intellij.testFramework.fixtures.DefaultLightProjectDescriptor;
+import com.intellij.testFramework.fixtures.LightJavaCodeInsightFixtureTestCase;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Base of the fixture tests. The light project uses the JDK running the tests, the IDE distribution the build
+ * compiles against doesn't ship the mock JDK. Its language level allows records.
+ */
+public abstract class InnerBuilderTestCase extends LightJavaCodeInsightFixtureTestCase {
+    private static final LightProjectDescriptor DESCRIPTOR = new DefaultLightProjectDescriptor(
+            () -> JavaSdk.getInstance().createJdk("java", System.getProperty("java.home"), false)) {
+        @NotNull
+        @Override
+        public LanguageLevel getLanguageLevel() {
+            return LanguageLevel.JDK_17;
+        }
+    };
+
+    @NotNull
+    @Override
+    protected LightProjectDescriptor getProjectDescriptor() {
+        return DESCRIPTOR;
+    }
+
+    @Override
+    protected String getTestDataPath() {
+        return "src/test/testData";
+    }
+
+    /**
+     * @return the class at the caret.
+     */
+    protected PsiClass getTargetClass() {
+        final PsiClass targetClass = InnerBuilderUtils.getStaticOrTopLevelClass(myFixture.getFile(),
+                myFixture.getEditor());
+        assertNotNull("no class at the caret", targetClass);
+        return targetClass;
+    }
+
+    /**
+     * Generates the builder for the class at the caret from all of its fields, the not-null ones required, like the
+     * dialogs do in unit test mode.
+     *
+     * @return the applied plan.
+     */
+    protected InnerBuilderPlan generate(final InnerBuilderOption... options) {
+        return generate(getTargetClass(), InnerBuilderMetrics.start(), options);
+    }
+
+    protected InnerBuilderPlan generate(final PsiClass targetClass, final InnerBuilderMetrics.Invocation invocation,
+                                        final InnerBuilderOption... options) {
+        final InnerBuilderHierarchyIndex index = new InnerBuilderHierarchyIndex(targetClass);
+        final List<PsiFieldMember> fields = InnerBuilderCollector.collectFields(targetClass, null, index);
+        assertNotNull(fields);
+        final Collection<PsiField> requiredFields = InnerBuilderCollector.collectNotNullFields(fields);
+        final InnerBuilderProfile profile = InnerBuilderProfile.of(Arrays.asList(options));
+
+        final InnerBuilderGenerator generator = new InnerBuilderGenerator(getProject(), targetClass, fields,
+                requiredFields, index, profile, invocation);
+        final InnerBuilderPlan plan = generator.plan();
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> generator.postProcess(generator.apply(plan)));
+        return plan;
+    }
+
+    /**
+     * Renders a class named {@code Target} with the given number of fields, spread over the class and a chain of
+     * superclasses in the same file, every other field a {@code String}.
+     *
+     * @param superclassCount the number of superclasses above {@code Target}, up to {@code Object}.
+     */
+    protected static String createHierarchyText(final int fieldCount, final int superclassCount) {
+        final StringBuilder[] bodies = new StringBuilder[superclassCount + 1];
+        for (int level = 0; level <= superclassCount; level++) {
+            bodies[level] = new StringBuilder();
+        }
+        for (int i = 0; i < fieldCount; i++) {
+            final int level = i % bodies.length;
+            final String modifier = level < superclassCount ? "protected" : "private";
+            bodies[level].append(String.format("    %s %s field%d;\n", modifier, i % 2 == 0 ? "String" : "int", i));
+        }
+
+        final StringBuilder text = new StringBuilder();
+        for (int level = 0; level < superclassCount; level++) {
+            text.append("class Level").append(level);
+            if (level > 0) {
+                text.append(" extends Level").append(level - 1);
+            }
+            text.append(" {\n").append(bodies[level]).append("}\n\n");
+        }
+        text.append("public class Target");
+        if (superclassCount > 0) {
+            text.append(" extends Level").append(superclassCount - 1);
+        }
+        return text.append(" {\n").append(bodies[superclassCount]).append("}\n").toString();
+    }
+
+    /**
+     * Reformats the whole file without keeping any blank lines and javadoc as generated, so the expected files
+     * don't depend on how the generated members were spaced.
+     */
+    protected void reformat() {
+        final CodeStyleSettings settings = CodeStyle.getSettings(getProject()).clone();
+        final CommonCodeStyleSettings javaSettings = settings.getCommonSettings(JavaLanguage.INSTANCE);
+        javaSettings.KEEP_BLANK_LINES_IN_DECLARATIONS = 0;
+        javaSettings.KEEP_BLANK_LINES_IN_CODE = 0;
+        javaSettings.KEEP_BLANK_LINES_BEFORE_RBRACE = 0;
+        settings.getCustomSettings(JavaCodeStyleSettings.class).ENABLE_JAVADOC_FORMATTING = false;
+
+        CodeStyle.doWithTemporarySettings(getProject(), settings, () ->
+                WriteCommandAction.runWriteCommandAction(getProject(), () ->
+                        CodeStyleManager.getInstance(getProject()).reformat(myFixture.getFile())));
+    }
+}
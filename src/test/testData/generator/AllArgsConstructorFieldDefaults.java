@@ -0,0 +1,4 @@
+public class <caret>Person {
+    private String name = "unknown";
+    private long created = System.currentTimeMillis();
+}
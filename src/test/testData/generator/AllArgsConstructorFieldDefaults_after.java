@@ -0,0 +1,31 @@
+public class Person {
+    private String name = "unknown";
+    private long created = System.currentTimeMillis();
+
+    private Person(String name, long created) {
+        this.name = name;
+        this.created = created;
+    }
+
+    public static final class Builder {
+        private String name = "unknown";
+        private long created;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder created(long val) {
+            created = val;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this.name, this.created);
+        }
+    }
+}
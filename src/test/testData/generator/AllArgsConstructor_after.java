@@ -0,0 +1,31 @@
+public class Person {
+    private String name;
+    private int age;
+
+    private Person(String name, int age) {
+        this.name = name;
+        this.age = age;
+    }
+
+    public static final class Builder {
+        private String name;
+        private int age;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this.name, this.age);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+public class Person {
+    private String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    public static final class Builder {
+        private String name;
+        private int age;
+
+        private Builder() {
+        }
+
+        public static Builder newBuilder() {
+            return new Builder();
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+    }
+}
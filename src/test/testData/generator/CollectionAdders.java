@@ -0,0 +1,8 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class <caret>Person {
+    private List<String> tags;
+}
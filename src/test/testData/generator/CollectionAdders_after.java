@@ -0,0 +1,59 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class Person {
+    private List<String> tags;
+
+    private Person(Builder builder) {
+        tags = builder.tags == null ? null : Collections.unmodifiableList(builder.tagsOwned ? builder.tags : new ArrayList<>(builder.tags));
+    }
+
+    public static final class Builder {
+        private List<String> tags;
+        private boolean tagsOwned;
+
+        public Builder() {
+        }
+
+        public Builder tags(List<String> val) {
+            tags = val;
+            tagsOwned = false;
+            return this;
+        }
+
+        private List<String> mutableTags(int extraSize) {
+            if (!this.tagsOwned) {
+                final List<String> copy = new ArrayList<>(Math.max((this.tags == null ? 0 : this.tags.size()) + extraSize, 10));
+                if (this.tags != null) {
+                    copy.addAll(this.tags);
+                }
+                this.tags = copy;
+                this.tagsOwned = true;
+            }
+            return this.tags;
+        }
+
+        public Builder expectTags(int expectedSize) {
+            mutableTags(expectedSize);
+            return this;
+        }
+
+        public Builder addTag(String val) {
+            mutableTags(1).add(val);
+            return this;
+        }
+
+        public Builder addAllTags(Collection<? extends String> values) {
+            mutableTags(values.size()).addAll(values);
+            return this;
+        }
+
+        public Person build() {
+            final Person result = new Person(this);
+            tagsOwned = false;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class <caret>Person {
+    private String name;
+    private List<String> tags;
+}
@@ -0,0 +1,36 @@
+public class Person {
+    private String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    public static final class Builder {
+        private String name;
+        private int age;
+
+        public Builder() {
+        }
+
+        public Builder(Person copy) {
+            this.name = copy.getName();
+            this.age = copy.getAge();
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+public class Person {
+    private String name = "unknown";
+    private long created;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        if (builder.createdSet) {
+            created = builder.created;
+        } else {
+            created = System.currentTimeMillis();
+        }
+    }
+
+    public static final class Builder {
+        private String name = "unknown";
+        private long created;
+        private boolean createdSet;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder created(long val) {
+            created = val;
+            createdSet = true;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+    }
+}
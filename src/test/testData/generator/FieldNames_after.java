@@ -0,0 +1,31 @@
+public class Person {
+    private String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    public static final class Builder {
+        private String name;
+        private int age;
+
+        public Builder() {
+        }
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder age(int age) {
+            this.age = age;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+    }
+}
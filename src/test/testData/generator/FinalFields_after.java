@@ -0,0 +1,27 @@
+public class Person {
+    private final String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    public static final class Builder {
+        private final String name;
+        private int age;
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+    }
+}
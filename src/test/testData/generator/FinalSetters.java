@@ -0,0 +1,4 @@
+public class <caret>Person {
+    private final String name;
+    private int age;
+}
@@ -0,0 +1,64 @@
+public class Person {
+    private String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    public static final class Builder {
+        public static final int FIELD_NAME = 0;
+        public static final int FIELD_AGE = 1;
+        private String name;
+        private int age;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public static int ordinalOf(String name) {
+            switch (name) {
+                case "name":
+                    return FIELD_NAME;
+                case "age":
+                    return FIELD_AGE;
+                default:
+                    return -1;
+            }
+        }
+
+        public Builder set(int ordinal, Object value) {
+            switch (ordinal) {
+                case FIELD_NAME:
+                    return name((String) value);
+                case FIELD_AGE:
+                    return age((Integer) value);
+                default:
+                    throw new IllegalArgumentException("Unknown field ordinal: " + ordinal);
+            }
+        }
+
+        public Builder setInt(int ordinal, int value) {
+            switch (ordinal) {
+                case FIELD_AGE:
+                    return age(value);
+                default:
+                    throw new IllegalArgumentException("Not a int field: " + ordinal);
+            }
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class <caret>Person {
+    private String name;
+    private int age;
+}
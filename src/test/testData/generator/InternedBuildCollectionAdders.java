@@ -0,0 +1,12 @@
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class <caret>Person {
+    private String name;
+    private List<String> tags;
+}
@@ -0,0 +1,97 @@
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class Person {
+    private String name;
+    private List<String> tags;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        tags = builder.tags == null ? null : Collections.unmodifiableList(builder.tagsOwned ? builder.tags : new ArrayList<>(builder.tags));
+    }
+
+    public static final class Builder {
+        private String name;
+        private List<String> tags;
+        private boolean tagsOwned;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder tags(List<String> val) {
+            tags = val;
+            tagsOwned = false;
+            return this;
+        }
+
+        private List<String> mutableTags(int extraSize) {
+            if (!this.tagsOwned) {
+                final List<String> copy = new ArrayList<>(Math.max((this.tags == null ? 0 : this.tags.size()) + extraSize, 10));
+                if (this.tags != null) {
+                    copy.addAll(this.tags);
+                }
+                this.tags = copy;
+                this.tagsOwned = true;
+            }
+            return this.tags;
+        }
+
+        public Builder expectTags(int expectedSize) {
+            mutableTags(expectedSize);
+            return this;
+        }
+
+        public Builder addTag(String val) {
+            mutableTags(1).add(val);
+            return this;
+        }
+
+        public Builder addAllTags(Collection<? extends String> values) {
+            mutableTags(values.size()).addAll(values);
+            return this;
+        }
+
+        public Person build() {
+            final Person result = new Person(this);
+            tagsOwned = false;
+            return result;
+        }
+
+        private static final int INTERNED_CACHE_SIZE = 1024;
+        private static final AtomicReferenceArray<WeakReference<Person>> INTERNED = new AtomicReferenceArray<>(INTERNED_CACHE_SIZE);
+
+        public Person buildInterned() {
+            final int slot = (internedHash() & 0x7fffffff) % INTERNED_CACHE_SIZE;
+            final WeakReference<Person> reference = INTERNED.get(slot);
+            final Person interned = reference != null ? reference.get() : null;
+            if (interned != null && matchesInterned(interned)) {
+                return interned;
+            }
+            final Person result = build();
+            INTERNED.set(slot, new WeakReference<>(result));
+            return result;
+        }
+
+        private int internedHash() {
+            int hash = 1;
+            hash = 31 * hash + Objects.hashCode(name);
+            hash = 31 * hash + Objects.hashCode(tags);
+            return hash;
+        }
+
+        private boolean matchesInterned(Person interned) {
+            return Objects.equals(name, interned.name)
+                    && Objects.equals(tags, interned.tags);
+        }
+    }
+}
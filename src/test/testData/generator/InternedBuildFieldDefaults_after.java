@@ -0,0 +1,69 @@
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class Person {
+    private String name = "unknown";
+    private long created;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        if (builder.createdSet) {
+            created = builder.created;
+        } else {
+            created = System.currentTimeMillis();
+        }
+    }
+
+    public static final class Builder {
+        private String name = "unknown";
+        private long created;
+        private boolean createdSet;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder created(long val) {
+            created = val;
+            createdSet = true;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+
+        private static final int INTERNED_CACHE_SIZE = 1024;
+        private static final AtomicReferenceArray<WeakReference<Person>> INTERNED = new AtomicReferenceArray<>(INTERNED_CACHE_SIZE);
+
+        public Person buildInterned() {
+            final int slot = (internedHash() & 0x7fffffff) % INTERNED_CACHE_SIZE;
+            final WeakReference<Person> reference = INTERNED.get(slot);
+            final Person interned = reference != null ? reference.get() : null;
+            if (interned != null && matchesInterned(interned)) {
+                return interned;
+            }
+            final Person result = build();
+            INTERNED.set(slot, new WeakReference<>(result));
+            return result;
+        }
+
+        private int internedHash() {
+            int hash = 1;
+            hash = 31 * hash + Objects.hashCode(name);
+            hash = 31 * hash + Long.hashCode(created);
+            hash = 31 * hash + Boolean.hashCode(createdSet);
+            return hash;
+        }
+
+        private boolean matchesInterned(Person interned) {
+            return Objects.equals(name, interned.name)
+                    && createdSet && created == interned.created;
+        }
+    }
+}
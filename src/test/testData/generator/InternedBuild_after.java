@@ -0,0 +1,62 @@
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class Person {
+    private String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    public static final class Builder {
+        private String name;
+        private int age;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+
+        private static final int INTERNED_CACHE_SIZE = 1024;
+        private static final AtomicReferenceArray<WeakReference<Person>> INTERNED = new AtomicReferenceArray<>(INTERNED_CACHE_SIZE);
+
+        public Person buildInterned() {
+            final int slot = (internedHash() & 0x7fffffff) % INTERNED_CACHE_SIZE;
+            final WeakReference<Person> reference = INTERNED.get(slot);
+            final Person interned = reference != null ? reference.get() : null;
+            if (interned != null && matchesInterned(interned)) {
+                return interned;
+            }
+            final Person result = build();
+            INTERNED.set(slot, new WeakReference<>(result));
+            return result;
+        }
+
+        private int internedHash() {
+            int hash = 1;
+            hash = 31 * hash + Objects.hashCode(name);
+            hash = 31 * hash + Integer.hashCode(age);
+            return hash;
+        }
+
+        private boolean matchesInterned(Person interned) {
+            return Objects.equals(name, interned.name)
+                    && age == interned.age;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+import javax.annotation.Nonnull;
+
+public class Person {
+    private String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    public static final class Builder {
+        private String name;
+        private int age;
+
+        public Builder() {
+        }
+
+        @Nonnull
+        public Builder name(@Nonnull String val) {
+            name = val;
+            return this;
+        }
+
+        @Nonnull
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        @Nonnull
+        public Person build() {
+            return new Person(this);
+        }
+    }
+}
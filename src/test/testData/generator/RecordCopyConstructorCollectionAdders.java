@@ -0,0 +1,7 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public record <caret>Person(String name, List<String> tags) {
+}
@@ -0,0 +1,28 @@
+public class <caret>Person {
+    private String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+    }
+
+    public static final class Builder {
+        private String name;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder adult() {
+            return age(18);
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+    }
+}
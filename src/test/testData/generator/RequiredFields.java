@@ -0,0 +1,7 @@
+import org.jetbrains.annotations.NotNull;
+
+public class <caret>Person {
+    @NotNull
+    private String name;
+    private int age;
+}
@@ -0,0 +1,61 @@
+import org.jetbrains.annotations.NotNull;
+
+public class Person {
+    @NotNull
+    private String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    public static final class Builder {
+        private String name;
+        private int age;
+        private static final long REQUIRED_FIELDS = 0x1L;
+        private long setFields;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            setFields |= 0x1L;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Person build() {
+            if (setFields != REQUIRED_FIELDS) {
+                throw new IllegalStateException(missingRequiredFields());
+            }
+            return new Person(this);
+        }
+
+        private String missingRequiredFields() {
+            final StringBuilder missing = new StringBuilder("Missing required fields:");
+            if ((setFields & 0x1L) == 0L) {
+                missing.append(" name");
+            }
+            return missing.toString();
+        }
+
+        public Person buildAndReset() {
+            final Person result = build();
+            reset();
+            return result;
+        }
+
+        public Builder reset() {
+            this.name = null;
+            this.age = 0;
+            setFields = 0L;
+            return this;
+        }
+    }
+}
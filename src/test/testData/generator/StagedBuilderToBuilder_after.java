@@ -0,0 +1,47 @@
+public class Person {
+    private final String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    public Builder toBuilder() {
+        final Builder builder = new Builder();
+        builder.name = this.name;
+        builder.age = this.age;
+        return builder;
+    }
+
+    public static NameStage newBuilder() {
+        return new Builder();
+    }
+
+    public interface NameStage {
+        Builder name(String val);
+    }
+
+    public static final class Builder implements NameStage {
+        private String name;
+        private int age;
+
+        private Builder() {
+        }
+
+        @Override
+        public Builder name(String val) {
+            this.name = val;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+public class Person {
+    private String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    public static final class Builder {
+        private static final ThreadLocal<Builder> THREAD_LOCAL_BUILDER = ThreadLocal.withInitial(Builder::new);
+        private String name;
+        private int age;
+
+        public Builder() {
+        }
+
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        public Person build() {
+            return new Person(this);
+        }
+
+        public Person buildAndReset() {
+            final Person result = build();
+            reset();
+            return result;
+        }
+
+        public Builder reset() {
+            this.name = null;
+            this.age = 0;
+            return this;
+        }
+
+        public static Builder forCurrentThread() {
+            return THREAD_LOCAL_BUILDER.get().reset();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+public class Person {
+    private String name;
+    private int age;
+
+    private Person(Builder builder) {
+        name = builder.name;
+        age = builder.age;
+    }
+
+    /**
+     * {@code Person} builder static inner class.
+     */
+    public static final class Builder {
+        private String name;
+        private int age;
+
+        public Builder() {
+        }
+
+        /**
+         * Sets the {@code name} and returns a reference to this Builder enabling method chaining.
+         * @param val the {@code name} to set
+         * @return a reference to this Builder
+         */
+        public Builder name(String val) {
+            name = val;
+            return this;
+        }
+
+        /**
+         * Sets the {@code age} and returns a reference to this Builder enabling method chaining.
+         * @param val the {@code age} to set
+         * @return a reference to this Builder
+         */
+        public Builder age(int val) {
+            age = val;
+            return this;
+        }
+
+        /**
+         * Returns a {@code Person} built from the parameters previously set.
+         *
+         * @return a {@code Person} built with parameters of this {@code Person.Builder}
+         */
+        public Person build() {
+            return new Person(this);
+        }
+    }
+}